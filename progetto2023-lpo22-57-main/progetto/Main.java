@@ -1,20 +1,47 @@
 package progetto;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
+import progetto.cache.ProgCache;
+import progetto.environments.Environment;
+import progetto.environments.FrameEnvironment;
+import progetto.environments.GenEnvironment;
+import progetto.environments.PersistentEnvironment;
 import progetto.parser.MyLangParser;
+import progetto.parser.MyLangScanner;
 import progetto.parser.MyLangTokenizer;
 import progetto.parser.ParserException;
+import progetto.parser.TokenBuffer;
+import progetto.parser.Tokenizer;
+import progetto.parser.ast.LinearProg;
+import progetto.parser.ast.NodeFactory;
 import progetto.parser.ast.Prog;
 import progetto.visitors.execution.Execute;
+import progetto.visitors.execution.IntValue;
+import progetto.visitors.execution.LinearExecute;
+import progetto.visitors.execution.VectorValue;
 import progetto.visitors.execution.InterpreterException;
+import progetto.visitors.resolution.Resolve;
+import progetto.visitors.typechecking.LinearTypecheck;
 import progetto.visitors.typechecking.Typecheck;
 import progetto.visitors.typechecking.TypecheckerException;
 
@@ -24,6 +51,22 @@ public class Main {
 	private static final String INPUT_OPT = "-i";
 	private static final String OUTPUT_OPT = "-o";
 	private static final String NO_TYPE_CHECK = "-ntc";
+	private static final String DFA_SCANNER = "-dfa";
+	private static final String MAP_INPUT = "-mmap";
+	private static final String TOKEN_BUFFER = "-tokbuf";
+	private static final String PARALLEL_LEXING = "-plex";
+	private static final String PRECEDENCE_CLIMBING = "-pratt";
+	private static final String STREAMING = "-stream";
+	private static final String CACHE_OPT = "-cache";
+	private static final String HASH_CONSING = "-hashcons";
+	private static final String LINEAR_AST = "-linear";
+	private static final String CHECK_OPT = "-check";
+	private static final String RESOLVE = "-resolve";
+	private static final String PERSISTENT_ENV = "-persistent";
+	private static final String INT_CACHE = "-intcache";
+	private static final String OFF_HEAP = "-offheap";
+	private static final String VECTOR_THREADS = "-vpar";
+	private static final String VECTOR_PARALLEL_FROM = "-vparmin";
 
 	/*
 	 * maps options to their string values, if any options with no argument are
@@ -35,6 +78,22 @@ public class Main {
 		options.put(INPUT_OPT, new String[1]); // one argument, initially null
 		options.put(OUTPUT_OPT, new String[1]); // one argument, initially null
 		options.put(NO_TYPE_CHECK, null); // no arguments
+		options.put(DFA_SCANNER, null); // no arguments
+		options.put(MAP_INPUT, null); // no arguments
+		options.put(TOKEN_BUFFER, null); // no arguments
+		options.put(PARALLEL_LEXING, null); // no arguments
+		options.put(PRECEDENCE_CLIMBING, null); // no arguments
+		options.put(STREAMING, null); // no arguments
+		options.put(CACHE_OPT, new String[1]); // one argument, initially null
+		options.put(HASH_CONSING, null); // no arguments
+		options.put(LINEAR_AST, null); // no arguments
+		options.put(CHECK_OPT, new String[1]); // one argument, initially null
+		options.put(RESOLVE, null); // no arguments
+		options.put(PERSISTENT_ENV, null); // no arguments
+		options.put(INT_CACHE, new String[1]); // one argument, initially null
+		options.put(OFF_HEAP, new String[1]); // one argument, initially null
+		options.put(VECTOR_THREADS, new String[1]); // one argument, initially null
+		options.put(VECTOR_PARALLEL_FROM, new String[1]); // one argument, initially null
 	}
 
 	// manage generic option errors
@@ -48,7 +107,7 @@ public class Main {
 		for (var i = 0; i < args.length; i++) {
 			var opt = args[i];
 			if (!options.containsKey(opt))
-				error("Option error.\nValid options:\n\t-i <input>\n\t-o <output>\n\t-ntc");
+				error("Option error.\nValid options:\n\t-i <input>\n\t-o <output>\n\t-ntc\n\t-dfa\n\t-mmap\n\t-tokbuf\n\t-plex\n\t-pratt\n\t-stream\n\t-cache <dir>\n\t-hashcons\n\t-linear\n\t-check <dir or list>\n\t-resolve\n\t-persistent\n\t-intcache <max>\n\t-offheap <min length>\n\t-vpar <threads>\n\t-vparmin <min length>");
 			var val = options.get(opt);
 			if (val == null) // set option with no argument (flag)
 				options.put(opt, new String[0]);
@@ -61,6 +120,29 @@ public class Main {
 		}
 	}
 
+	// passes the integer argument of option 'opt', if any, to 'setter'
+	private static void processIntOption(String opt, IntConsumer setter) {
+		var arg = options.get(opt)[0];
+		if (arg != null)
+			try {
+				setter.accept(Integer.parseInt(arg));
+			} catch (IllegalArgumentException e) { // also NumberFormatException
+				error("Invalid argument for option " + opt + ": " + arg);
+			}
+	}
+
+	// exits with an error if options 'opt1' and 'opt2' are both set
+	private static void rejectTogether(String opt1, String opt2) {
+		if (isSet(opt1) && isSet(opt2))
+			error("Option " + opt1 + " cannot be used with " + opt2);
+	}
+
+	// true if flag 'opt' is set or option 'opt' has an argument
+	private static boolean isSet(String opt) {
+		var val = options.get(opt);
+		return val != null && (val.length == 0 || val[0] != null);
+	}
+
 	// end of utility methods for option processing
 
 	// opens the input stream, standard input if -i option is null
@@ -73,16 +155,275 @@ public class Main {
 		return outputPath == null ? new PrintWriter(System.out) : new PrintWriter(outputPath);
 	}
 
+	/*
+	 * maps the input file in memory and decodes it as a whole with the default charset, as done by FileReader;
+	 * returns null if the file is too large to be mapped
+	 */
+	private static CharBuffer tryMapInput(String inputPath) throws IOException {
+		try (var channel = new FileInputStream(inputPath).getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE)
+				return null;
+			return Charset.defaultCharset().decode(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/*
+	 * with -tokbuf or -plex option, the whole input is tokenized by 'scanner' in a first pass and the parser reads
+	 * the resulting token buffer
+	 */
+	private static Tokenizer tryBufferTokens(MyLangScanner scanner) throws IOException {
+		if (options.get(TOKEN_BUFFER) == null && options.get(PARALLEL_LEXING) == null)
+			return scanner;
+		try (scanner) {
+			return TokenBuffer.lex(scanner).tokenizer();
+		}
+	}
+
+	/*
+	 * opens the tokenizer: the hand-written scanner is used if -dfa, -mmap, -tokbuf or -plex option is set;
+	 * with -mmap the input file, if any, is scanned as a whole, standard input is read in chunks;
+	 * with -plex the input file, if any, is mapped and lexed in parallel into a token buffer
+	 */
+	private static Tokenizer tryOpenTokenizer(String inputPath) throws IOException {
+		final var parallel = options.get(PARALLEL_LEXING) != null;
+		if ((options.get(MAP_INPUT) != null || parallel) && inputPath != null) {
+			var text = tryMapInput(inputPath);
+			if (text != null && parallel)
+				return TokenBuffer.lexParallel(text, ForkJoinPool.commonPool()).tokenizer();
+			if (text != null)
+				return tryBufferTokens(new MyLangScanner(text));
+		}
+		var rd = tryOpenInput(inputPath);
+		if (options.get(DFA_SCANNER) == null && options.get(MAP_INPUT) == null && options.get(TOKEN_BUFFER) == null
+				&& !parallel)
+			return new MyLangTokenizer(rd);
+		return tryBufferTokens(new MyLangScanner(rd));
+	}
+
+	/*
+	 * opens the tokenizer on 'text', the whole input already read, according to the same options as
+	 * 'tryOpenTokenizer'
+	 */
+	private static Tokenizer tryOpenTokenizer(CharBuffer text) throws IOException {
+		if (options.get(PARALLEL_LEXING) != null)
+			return TokenBuffer.lexParallel(text, ForkJoinPool.commonPool()).tokenizer();
+		if (options.get(DFA_SCANNER) == null && options.get(MAP_INPUT) == null && options.get(TOKEN_BUFFER) == null)
+			return new MyLangTokenizer(new BufferedReader(new StringReader(text.toString())));
+		return tryBufferTokens(new MyLangScanner(text));
+	}
+
+	/*
+	 * creates the parser reading from 'tokenizer'; with -pratt option expressions are parsed by precedence climbing,
+	 * with -hashcons option structurally equal expressions are shared
+	 */
+	private static MyLangParser newParser(Tokenizer tokenizer) {
+		var nodes = options.get(HASH_CONSING) != null ? NodeFactory.hashConsing() : new NodeFactory();
+		return new MyLangParser(tokenizer, options.get(PRECEDENCE_CLIMBING) != null, nodes);
+	}
+
+	// parses, typechecks, unless -ntc option is set, and executes the program read by 'tokenizer'
+	private static void run(Tokenizer tokenizer) throws IOException, ParserException {
+		try (tokenizer;
+				var parser = newParser(tokenizer);
+				var pw = tryOpenOutput(options.get(OUTPUT_OPT)[0]);) {
+			if (options.get(STREAMING) != null)
+				runStreaming(parser, pw);
+			else {
+				Prog prog = tryLinearize(parser.parseProg());
+				if (options.get(NO_TYPE_CHECK) == null)
+					typecheck(prog);
+				execute(prog, pw);
+			}
+		}
+	}
+
+	/*
+	 * with -cache option, the whole input is read and its program is looked up in the cache by the hash of the
+	 * source; on a hit, the program is executed without being parsed and typechecked again, otherwise it is parsed,
+	 * typechecked unless -ntc option is set, and stored in the cache before being executed
+	 */
+	private static void runCached(ProgCache cache, String inputPath) throws IOException, ParserException {
+		byte[] source;
+		try (var in = inputPath == null ? System.in : new FileInputStream(inputPath)) {
+			source = in.readAllBytes();
+		}
+		var key = ProgCache.key(source);
+		var typecheck = options.get(NO_TYPE_CHECK) == null;
+		var prog = cache.load(key, typecheck);
+		try (var pw = tryOpenOutput(options.get(OUTPUT_OPT)[0])) {
+			if (prog == null) {
+				try (var tokenizer = tryOpenTokenizer(Charset.defaultCharset().decode(ByteBuffer.wrap(source)));
+						var parser = newParser(tokenizer)) {
+					prog = parser.parseProg();
+				}
+				if (typecheck)
+					prog.accept(newTypecheck());
+				cache.store(key, prog, typecheck);
+			}
+			execute(tryLinearize(prog), pw);
+		}
+	}
+
+	// typechecks 'prog'; a linearized program is checked on its arrays
+	private static void typecheck(Prog prog) {
+		if (prog instanceof LinearProg linear)
+			new LinearTypecheck(linear, newEnvironment()).typecheck();
+		else
+			prog.accept(newTypecheck());
+	}
+
+	/*
+	 * executes 'prog'; with -resolve option, its variables are first resolved to their depth and slot and the
+	 * resolved copy, which is a tree also with -linear option, is executed with array frames; otherwise a
+	 * linearized program is executed on its arrays
+	 */
+	private static void execute(Prog prog, PrintWriter pw) {
+		if (options.get(RESOLVE) != null)
+			Resolve.resolve(prog).accept(new Execute(pw, new FrameEnvironment<>()));
+		else if (prog instanceof LinearProg linear)
+			new LinearExecute(linear, pw, newEnvironment()).execute();
+		else
+			prog.accept(newExecute(pw));
+	}
+
+	/*
+	 * with -persistent option, typechecking, also with -check option, and execution use persistent environments;
+	 * the option cannot be used with -resolve, whose resolved programs are executed with array frames
+	 */
+	private static <T> Environment<T> newEnvironment() {
+		return options.get(PERSISTENT_ENV) != null ? new PersistentEnvironment<>() : new GenEnvironment<>();
+	}
+
+	private static Typecheck newTypecheck() {
+		return new Typecheck(newEnvironment());
+	}
+
+	private static Execute newExecute(PrintWriter pw) {
+		return new Execute(pw, newEnvironment());
+	}
+
+	/*
+	 * with -linear option, the program is converted to its linearized form before being typechecked and executed,
+	 * which takes less memory but more time, see 'LinearProg'
+	 */
+	private static Prog tryLinearize(Prog prog) {
+		return options.get(LINEAR_AST) != null ? LinearProg.of(prog) : prog;
+	}
+
+	/*
+	 * with -check option, the files in the directory 'path', or listed one per line in the file 'path', are
+	 * validated in parallel, recovering from syntax and static errors at statement boundaries; for each file, in
+	 * order, a line with a JSON object with its path, validity and errors is written on the output, followed by a
+	 * line with the totals; static errors are checked only for files without syntax errors, unless -ntc option is
+	 * set; the exit status is 1 if some file is not valid
+	 */
+	private static boolean runCheck(String path) throws IOException {
+		final var root = Path.of(path);
+		final List<Path> files;
+		if (Files.isDirectory(root))
+			try (var paths = Files.walk(root)) {
+				files = paths.filter(Files::isRegularFile).sorted().toList();
+			}
+		else
+			files = Files.readAllLines(root).stream().filter(line -> !line.isBlank()).map(Path::of).toList();
+		final var reports = files.parallelStream().map(Main::check).toList();
+		var invalid = 0;
+		try (var pw = tryOpenOutput(options.get(OUTPUT_OPT)[0])) {
+			for (var report : reports) {
+				pw.println(report.json());
+				if (!report.valid())
+					invalid++;
+			}
+			pw.println("{\"files\":" + files.size() + ",\"valid\":" + (files.size() - invalid) + ",\"invalid\":"
+					+ invalid + "}");
+		}
+		return invalid == 0;
+	}
+
+	private record Report(boolean valid, String json) {
+	}
+
+	// validates 'file' and returns its report
+	private static Report check(Path file) {
+		final var errors = new ArrayList<String>();
+		try {
+			final var source = Charset.defaultCharset().decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+			final var syntaxErrors = new ArrayList<ParserException>();
+			final Prog prog;
+			try (var parser = newParser(tryOpenTokenizer(source))) {
+				prog = parser.parseProg(syntaxErrors);
+			}
+			for (var e : syntaxErrors)
+				errors.add(jsonError("syntax", e.getMessage()));
+			if (prog != null && options.get(NO_TYPE_CHECK) == null) {
+				final var staticErrors = new ArrayList<TypecheckerException>();
+				prog.accept(new Typecheck(newEnvironment(), staticErrors));
+				for (var e : staticErrors)
+					errors.add(jsonError("static", e.getMessage()));
+			}
+		} catch (IOException e) {
+			errors.add(jsonError("io", e.toString()));
+		} catch (RuntimeException e) {
+			errors.add(jsonError("unexpected", e.toString()));
+		}
+		return new Report(errors.isEmpty(), "{\"file\":" + jsonString(file.toString()) + ",\"valid\":"
+				+ errors.isEmpty() + ",\"errors\":[" + String.join(",", errors) + "]}");
+	}
+
+	private static String jsonError(String kind, String message) {
+		return "{\"kind\":\"" + kind + "\",\"message\":" + jsonString(String.valueOf(message)) + "}";
+	}
+
+	// JSON string literal for 's'
+	private static String jsonString(String s) {
+		final var sb = new StringBuilder(s.length() + 2).append('"');
+		for (var i = 0; i < s.length(); i++) {
+			final var c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	/*
+	 * with -stream option, each top-level statement is typechecked and executed as soon as it has been parsed,
+	 * and then dropped; errors in a statement are reported after the output of the previous ones
+	 */
+	private static void runStreaming(MyLangParser parser, PrintWriter pw) throws ParserException {
+		final var typecheck = options.get(NO_TYPE_CHECK) == null ? newTypecheck() : null;
+		final var execute = newExecute(pw);
+		parser.parseProg(stmt -> {
+			if (typecheck != null)
+				typecheck.typecheck(stmt);
+			execute.execute(stmt);
+			pw.flush();
+		});
+	}
+
 	public static void main(String[] args) {
 		processArgs(args);
-		try (var rd = tryOpenInput(options.get(INPUT_OPT)[0]);
-				var tokenizer = new MyLangTokenizer(rd);
-				var parser = new MyLangParser(tokenizer);
-				var pw = tryOpenOutput(options.get(OUTPUT_OPT)[0]);) {
-			Prog prog = parser.parseProg();
-			if (options.get(NO_TYPE_CHECK) == null)
-				prog.accept(new Typecheck());
-			prog.accept(new Execute(pw));
+		rejectTogether(CACHE_OPT, STREAMING);
+		rejectTogether(RESOLVE, PERSISTENT_ENV);
+		processIntOption(INT_CACHE, IntValue::cacheUpTo);
+		processIntOption(OFF_HEAP, VectorValue::offHeapFrom);
+		processIntOption(VECTOR_THREADS, VectorValue::parallelism);
+		processIntOption(VECTOR_PARALLEL_FROM, VectorValue::parallelFrom);
+		try {
+			var checkPath = options.get(CHECK_OPT)[0];
+			if (checkPath != null) {
+				if (!runCheck(checkPath))
+					System.exit(1);
+				return;
+			}
+			var cacheDir = options.get(CACHE_OPT)[0];
+			if (cacheDir != null)
+				runCached(new ProgCache(Path.of(cacheDir)), options.get(INPUT_OPT)[0]);
+			else
+				run(tryOpenTokenizer(options.get(INPUT_OPT)[0]));
 		} catch (IOException e) {
 			error("I/O error: " + e.getMessage());
 		} catch (ParserException e) {
@@ -0,0 +1,195 @@
+package progetto.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+import progetto.parser.ast.Prog;
+import progetto.visitors.serialization.Deserialize;
+import progetto.visitors.serialization.Serialize;
+
+/*
+ * on-disk cache of parsed programs, stored in a directory with the serialization of 'Serialize'
+ *
+ * entries are keyed by the SHA-256 hash of the interpreter version followed by the source, and each entry file
+ * starts with a header with the full key, the typechecked flag, the length and the CRC-32 of the serialized
+ * program; entries with a wrong header or checksum, or which cannot be deserialized, are deleted and treated as
+ * missing
+ *
+ * entries are written to a temporary file and then renamed, hence concurrent runs never see partial entries;
+ * when the cache exceeds its limits, the least recently used entries are evicted
+ */
+
+public class ProgCache {
+
+	// to be incremented whenever the syntax, the static semantics or the serialization of programs change
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x4D4C4143; // "MLAC"
+	private static final String SUFFIX = ".ast";
+	private static final int HEADER_SIZE = 4 + 4 + 32 + 1 + 4 + 8;
+
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+	private final Path dir;
+	private final int maxEntries;
+	private final long maxBytes;
+
+	public ProgCache(Path dir, int maxEntries, long maxBytes) throws IOException {
+		if (maxEntries <= 0 || maxBytes <= 0)
+			throw new IllegalArgumentException("Cache limits must be positive");
+		this.dir = Files.createDirectories(requireNonNull(dir));
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	public ProgCache(Path dir) throws IOException {
+		this(dir, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	}
+
+	// returns the key of the program with source 'source'
+	public static byte[] key(byte[] source) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+			return digest.digest(source);
+		} catch (NoSuchAlgorithmException e) { // SHA-256 is supported by every Java platform
+			throw new AssertionError(e);
+		}
+	}
+
+	private Path entry(byte[] key) {
+		return dir.resolve(HexFormat.of().formatHex(key) + SUFFIX);
+	}
+
+	/*
+	 * returns the program with key 'key', or null if it is missing or it has not been typechecked and 'typechecked'
+	 * is true
+	 */
+	public Prog load(byte[] key, boolean typechecked) throws IOException {
+		var path = entry(key);
+		byte[] data;
+		try {
+			data = Files.readAllBytes(path);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		Prog prog;
+		boolean checked;
+		try (var in = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (data.length < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !Arrays.equals(in.readNBytes(key.length), key))
+				throw new IOException("Stale or corrupt entry");
+			checked = in.readBoolean();
+			var length = in.readInt();
+			var crc = in.readLong();
+			if (length != data.length - HEADER_SIZE || crc != checksum(data, HEADER_SIZE, length))
+				throw new IOException("Corrupt entry");
+			prog = Deserialize.deserialize(Arrays.copyOfRange(data, HEADER_SIZE, data.length));
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(path);
+			return null;
+		}
+		if (typechecked && !checked)
+			return null;
+		try { // the last modified time of entries is their last use
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException e) { // concurrently evicted
+		}
+		return prog;
+	}
+
+	private static long checksum(byte[] data, int offset, int length) {
+		var crc = new CRC32();
+		crc.update(data, offset, length);
+		return crc.getValue();
+	}
+
+	/*
+	 * stores 'prog' with key 'key', marked as typechecked if 'typechecked' is true, and evicts the least recently
+	 * used entries if needed; since the cache is only an optimization, I/O errors are ignored
+	 */
+	public void store(byte[] key, Prog prog, boolean typechecked) {
+		var data = Serialize.serialize(prog);
+		var bytes = new ByteArrayOutputStream(HEADER_SIZE + data.length);
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.write(key);
+			out.writeBoolean(typechecked);
+			out.writeInt(data.length);
+			out.writeLong(checksum(data, 0, data.length));
+			out.write(data);
+		} catch (IOException e) { // cannot occur on a byte array
+			throw new AssertionError(e);
+		}
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(dir, "entry", ".tmp");
+			Files.write(tmp, bytes.toByteArray());
+			try {
+				Files.move(tmp, entry(key), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, entry(key), StandardCopyOption.REPLACE_EXISTING);
+			}
+			evict();
+		} catch (IOException e) {
+			try {
+				if (tmp != null)
+					Files.deleteIfExists(tmp);
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	private record Entry(Path path, long size, long lastUsed) {
+	}
+
+	// deletes the least recently used entries until the cache is within its limits
+	private void evict() throws IOException {
+		var entries = new ArrayList<Entry>();
+		long total = 0;
+		try (var paths = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+			for (var path : paths)
+				try {
+					var entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+					entries.add(entry);
+					total += entry.size;
+				} catch (NoSuchFileException e) { // concurrently evicted
+				}
+		}
+		if (entries.size() <= maxEntries && total <= maxBytes)
+			return;
+		entries.sort(Comparator.comparingLong(Entry::lastUsed));
+		var count = entries.size();
+		for (var i = 0; i < entries.size() && (count > maxEntries || total > maxBytes); i++) {
+			Files.deleteIfExists(entries.get(i).path);
+			count--;
+			total -= entries.get(i).size;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + dir + ")";
+	}
+}
@@ -0,0 +1,90 @@
+package progetto.environments;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+import progetto.parser.ast.NamedEntity;
+import progetto.parser.ast.ResolvedVariable;
+
+/*
+ * environment for programs whose variables have been resolved by 'Resolve': scopes are arrays indexed by the slot
+ * of the variables, and the scope of a variable is found by its depth, hence no lookup needs hashing
+ *
+ * variables which are not instances of 'ResolvedVariable' are those which could not be resolved: they are reported
+ * as undeclared when looked up or updated, and as already declared when declared, as 'GenEnvironment' would do
+ */
+
+public class FrameEnvironment<T> implements Environment<T> {
+
+	private static final Object[] EMPTY = {};
+
+	/*
+	 * the scope chain, the innermost scope is at index 'top'; the frames beyond 'top' are kept empty to be reused
+	 * by the next scopes at the same depth, and 'used' is the number of slots of each frame which may be non null
+	 */
+	private Object[][] frames = new Object[8][];
+	private int[] used = new int[8];
+	private int top;
+
+	// creates an environment with just one empty scope
+	public FrameEnvironment() {
+		Arrays.fill(frames, EMPTY);
+	}
+
+	// frames are allocated by the first declaration at their depth, and then reused
+	@Override
+	public void enterScope() {
+		if (++top == frames.length) {
+			frames = Arrays.copyOf(frames, 2 * top);
+			Arrays.fill(frames, top, frames.length, EMPTY);
+			used = Arrays.copyOf(used, 2 * top);
+		}
+	}
+
+	// the frame is cleared in time proportional to the number of its variables
+	@Override
+	public void exitScope() {
+		Arrays.fill(frames[top], 0, used[top], null);
+		used[top--] = 0;
+	}
+
+	private static ResolvedVariable resolved(NamedEntity var) {
+		if (var instanceof ResolvedVariable resolved)
+			return resolved;
+		throw new EnvironmentException("Undeclared variable " + var.getName());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T lookup(NamedEntity var) {
+		final var resolved = resolved(var);
+		return (T) frames[top - resolved.getDepth()][resolved.getSlot()];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T dec(NamedEntity var, T info) {
+		if (!(var instanceof ResolvedVariable resolved))
+			throw new EnvironmentException("Variable " + var.getName() + " already declared");
+		final var slot = resolved.getSlot();
+		var frame = frames[top];
+		if (slot >= frame.length)
+			frames[top] = frame = Arrays.copyOf(frame, Math.max(slot + 1, 2 * frame.length));
+		if (slot >= used[top])
+			used[top] = slot + 1;
+		final var previous = (T) frame[slot];
+		frame[slot] = requireNonNull(info);
+		return previous;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T update(NamedEntity var, T info) {
+		final var resolved = resolved(var);
+		final var frame = frames[top - resolved.getDepth()];
+		final var previous = (T) frame[resolved.getSlot()];
+		frame[resolved.getSlot()] = requireNonNull(info);
+		return previous;
+	}
+}
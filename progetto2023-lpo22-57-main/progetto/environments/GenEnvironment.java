@@ -2,62 +2,72 @@ package progetto.environments;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.Arrays;
 
 import progetto.parser.ast.NamedEntity;
 
+/*
+ * environment indexed by the ids of the variables, see 'SymbolTable', which must all come from the same table
+ *
+ * the scope chain is represented by shallow binding: 'infos' associates the id of each variable with its
+ * innermost declaration, null if none, and 'levels' with the nesting level of the scope of that declaration;
+ * when a variable is declared, its previous declaration is saved on a stack and it is restored when the scope
+ * is exited, hence lookups and updates access one array element without hashing, scopes allocate nothing and
+ * they are exited in time proportional to the number of their declarations
+ */
+
 public class GenEnvironment<T> implements Environment<T> {
 
-	private LinkedList<HashMap<NamedEntity, T>> scopeChain = new LinkedList<>();
+	private Object[] infos = new Object[16];
+	private int[] levels = new int[16];
+	private int level; // nesting level of the innermost scope, 0 for the outermost one
 
-	/*
-	 * enter a new nested scope; private method shared by 'enterScope()' and the
-	 * constructor 'GenEnvironment()'
-	 */
-	private void addEmptyScope() {
-		scopeChain.addFirst(new HashMap<>());
-	}
+	// stack of the declarations shadowed by the ones of the current scopes
+	private NamedEntity[] savedVars = new NamedEntity[16];
+	private Object[] savedInfos = new Object[16];
+	private int[] savedLevels = new int[16];
+	private int saved;
+
+	private int[] scopeStarts = new int[16]; // size of the stack when each scope was entered
 
 	/* create an environment with just one empty scope */
 	public GenEnvironment() {
-		addEmptyScope();
 	}
 
 	@Override
 	public void enterScope() {
-		addEmptyScope();
+		if (++level == scopeStarts.length)
+			scopeStarts = Arrays.copyOf(scopeStarts, 2 * level);
+		scopeStarts[level] = saved;
 	}
 
+	// restores the declarations shadowed by the innermost scope
 	@Override
 	public void exitScope() {
-		scopeChain.removeFirst();
+		final var start = scopeStarts[level--];
+		while (saved > start) {
+			saved--;
+			final var id = savedVars[saved].getId();
+			infos[id] = savedInfos[saved];
+			levels[id] = savedLevels[saved];
+			savedVars[saved] = null;
+			savedInfos[saved] = null;
+		}
 	}
 
-	/*
-	 * looks up the innermost scope where 'var' is found;
-	 * throws an 'EnvironmentException' if 'var' could not be found in any scope
-	 */
-
-	protected Map<NamedEntity, T> resolve(NamedEntity var) {
-		for (var scope : scopeChain)
-			if (scope.containsKey(var))
-				return scope;
-		throw new EnvironmentException("Undeclared variable " + var.getName());
+	// the innermost declaration of 'var';
+	// throws an 'EnvironmentException' if 'var' could not be found in any scope
+	private int resolve(NamedEntity var) {
+		final var id = var.getId();
+		if (id >= infos.length || infos[id] == null)
+			throw new EnvironmentException("Undeclared variable " + var.getName());
+		return id;
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public T lookup(NamedEntity var) {
-		return resolve(var).get(var);
-	}
-
-	/*
-	 * updates map to associate 'var' with 'info'; 'var' and 'info' must be non-null
-	 */
-
-	private static <T> T updateScope(Map<NamedEntity, T> map, NamedEntity var, T info) {
-		return map.put(requireNonNull(var), requireNonNull(info));
+		return (T) infos[resolve(var)];
 	}
 
 	/*
@@ -67,10 +77,26 @@ public class GenEnvironment<T> implements Environment<T> {
 
 	@Override
 	public T dec(NamedEntity var, T info) {
-		var scope = scopeChain.getFirst();
-		if (scope.containsKey(var))
+		final var id = requireNonNull(var).getId();
+		requireNonNull(info);
+		if (id >= infos.length) {
+			final var length = Math.max(id + 1, 2 * infos.length);
+			infos = Arrays.copyOf(infos, length);
+			levels = Arrays.copyOf(levels, length);
+		}
+		if (infos[id] != null && levels[id] == level)
 			throw new EnvironmentException("Variable " + var.getName() + " already declared");
-		return updateScope(scope, var, info);
+		if (saved == savedVars.length) {
+			savedVars = Arrays.copyOf(savedVars, 2 * saved);
+			savedInfos = Arrays.copyOf(savedInfos, 2 * saved);
+			savedLevels = Arrays.copyOf(savedLevels, 2 * saved);
+		}
+		savedVars[saved] = var;
+		savedInfos[saved] = infos[id];
+		savedLevels[saved++] = levels[id];
+		infos[id] = info;
+		levels[id] = level;
+		return null;
 	}
 
 	/*
@@ -78,10 +104,13 @@ public class GenEnvironment<T> implements Environment<T> {
 	 * found in the scope chain. Only used for the dynamic semantics
 	 */
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public T update(NamedEntity var, T info) {
-		var scope = resolve(var);
-		return updateScope(scope, var, info);
+		final var id = resolve(var);
+		final var previous = (T) infos[id];
+		infos[id] = requireNonNull(info);
+		return previous;
 	}
 
 }
@@ -0,0 +1,163 @@
+package progetto.environments;
+
+import static java.util.Objects.requireNonNull;
+
+import progetto.parser.ast.NamedEntity;
+
+/*
+ * environment whose states are immutable, so that they can be saved and restored in constant time, for instance
+ * to fork the state of the interpreter
+ *
+ * a state is a chain of scopes, the innermost one first; each scope is a persistent map from the ids of the
+ * variables, see 'SymbolTable', to their infos, implemented as a hash array mapped trie indexed by the bits of the
+ * ids, 5 at a time starting from the least significant ones; every operation builds a new state sharing all the
+ * unchanged parts of the previous one, in particular an update copies the path to the variable in the map of the
+ * scope which declares it and the scopes nested in it
+ */
+
+public class PersistentEnvironment<T> implements Environment<T> {
+
+	// trie node: 'slots' contains the children of the bits set in 'bitmap', in order, either nodes or leaves
+	private static final class Node {
+		private final int bitmap;
+		private final Object[] slots;
+
+		private Node(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+	}
+
+	private record Leaf(int id, Object info) {
+	}
+
+	private static final Node EMPTY = new Node(0, new Object[0]);
+
+	/*
+	 * immutable state of the environment, a scope and the scopes enclosing it
+	 */
+	public static final class Snapshot<T> {
+		private final Node map;
+		private final Snapshot<T> parent;
+
+		private Snapshot(Node map, Snapshot<T> parent) {
+			this.map = map;
+			this.parent = parent;
+		}
+	}
+
+	private Snapshot<T> top;
+
+	/* create an environment with just one empty scope */
+	public PersistentEnvironment() {
+		top = new Snapshot<>(EMPTY, null);
+	}
+
+	// the current state, in constant time
+	public Snapshot<T> snapshot() {
+		return top;
+	}
+
+	// goes back to the state 'snapshot', in constant time
+	public void restore(Snapshot<T> snapshot) {
+		top = requireNonNull(snapshot);
+	}
+
+	// the info associated with 'id' in 'node', null if none
+	private static Object get(Node node, int id) {
+		for (var shift = 0;; shift += 5) {
+			final var bit = 1 << ((id >>> shift) & 31);
+			if ((node.bitmap & bit) == 0)
+				return null;
+			final var slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+			if (slot instanceof Leaf leaf)
+				return leaf.id == id ? leaf.info : null;
+			node = (Node) slot;
+		}
+	}
+
+	// the node associating 'leaf.id' with 'leaf.info' and the other ids as 'node' does, for the bits from 'shift'
+	private static Node put(Node node, Leaf leaf, int shift) {
+		final var bit = 1 << ((leaf.id >>> shift) & 31);
+		final var index = Integer.bitCount(node.bitmap & (bit - 1));
+		if ((node.bitmap & bit) == 0) {
+			final var slots = new Object[node.slots.length + 1];
+			System.arraycopy(node.slots, 0, slots, 0, index);
+			slots[index] = leaf;
+			System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+			return new Node(node.bitmap | bit, slots);
+		}
+		final var slots = node.slots.clone();
+		if (slots[index] instanceof Leaf other)
+			slots[index] = other.id == leaf.id ? leaf : merge(other, leaf, shift + 5);
+		else
+			slots[index] = put((Node) slots[index], leaf, shift + 5);
+		return new Node(node.bitmap, slots);
+	}
+
+	// the node with two leaves whose ids have the same bits before 'shift'; distinct ids differ in some 5 bits
+	private static Node merge(Leaf leaf1, Leaf leaf2, int shift) {
+		final var index1 = (leaf1.id >>> shift) & 31;
+		final var index2 = (leaf2.id >>> shift) & 31;
+		if (index1 == index2)
+			return new Node(1 << index1, new Object[] { merge(leaf1, leaf2, shift + 5) });
+		final var slots = index1 < index2 ? new Object[] { leaf1, leaf2 } : new Object[] { leaf2, leaf1 };
+		return new Node(1 << index1 | 1 << index2, slots);
+	}
+
+	@Override
+	public void enterScope() {
+		top = new Snapshot<>(EMPTY, top);
+	}
+
+	@Override
+	public void exitScope() {
+		top = top.parent;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T lookup(NamedEntity var) {
+		final var id = var.getId();
+		for (var scope = top; scope != null; scope = scope.parent) {
+			final var info = get(scope.map, id);
+			if (info != null)
+				return (T) info;
+		}
+		throw new EnvironmentException("Undeclared variable " + var.getName());
+	}
+
+	/*
+	 * updates the innermost scope by associating 'var' with 'info'; 'var' is not allowed
+	 * to be already defined, 'var' and 'info' must be non-null
+	 */
+
+	@Override
+	public T dec(NamedEntity var, T info) {
+		final var id = requireNonNull(var).getId();
+		if (get(top.map, id) != null)
+			throw new EnvironmentException("Variable " + var.getName() + " already declared");
+		top = new Snapshot<>(put(top.map, new Leaf(id, requireNonNull(info)), 0), top.parent);
+		return null;
+	}
+
+	/*
+	 * updates the 'info' of the innermost variable 'var', throws an 'EnvironmentException' if no varibale 'var' can be
+	 * found in the scope chain
+	 */
+
+	@Override
+	public T update(NamedEntity var, T info) {
+		final var previous = lookup(var);
+		top = update(top, new Leaf(var.getId(), requireNonNull(info)));
+		return previous;
+	}
+
+	// the scope chain 'scope' where the innermost declaration of 'leaf.id' is associated with 'leaf.info'
+	private static <T> Snapshot<T> update(Snapshot<T> scope, Leaf leaf) {
+		if (get(scope.map, leaf.id) != null)
+			return new Snapshot<>(put(scope.map, leaf, 0), scope.parent);
+		return new Snapshot<>(scope.map, update(scope.parent, leaf));
+	}
+
+}
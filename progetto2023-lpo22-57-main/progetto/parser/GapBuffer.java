@@ -0,0 +1,142 @@
+package progetto.parser;
+
+import java.nio.CharBuffer;
+import java.util.Objects;
+
+/*
+ * editable text stored in an array with a gap at the position of the last edit, see 'IncrementalParser'
+ *
+ * an edit moves the gap to its position, by copying the characters between the two positions, and then
+ * fills or widens the gap; hence edits close to each other, as the ones of a user typing, cost time proportional
+ * to their length, not to the length of the text
+ */
+
+class GapBuffer implements CharSequence {
+
+	private static final int MIN_GAP = 1024;
+
+	private char[] buf;
+	private int gapStart; // the gap is between 'gapStart' (included) and 'gapEnd' (excluded)
+	private int gapEnd;
+
+	GapBuffer(CharSequence text) {
+		final var length = text.length();
+		buf = new char[length + MIN_GAP];
+		text.toString().getChars(0, length, buf, 0);
+		gapStart = length;
+		gapEnd = buf.length;
+	}
+
+	@Override
+	public int length() {
+		return buf.length - (gapEnd - gapStart);
+	}
+
+	@Override
+	public char charAt(int index) {
+		return index < gapStart ? buf[index] : buf[index + gapEnd - gapStart];
+	}
+
+	// replaces 'removed' characters starting at 'offset' with 'inserted'
+	void replace(int offset, int removed, CharSequence inserted) {
+		Objects.checkFromIndexSize(offset, removed, length());
+		moveGap(offset);
+		gapEnd += removed;
+		final var length = inserted.length();
+		if (gapEnd - gapStart < length) {
+			final var size = length();
+			final var grown = new char[size + length + Math.max(MIN_GAP, size >> 3)];
+			final var after = buf.length - gapEnd;
+			System.arraycopy(buf, 0, grown, 0, gapStart);
+			System.arraycopy(buf, gapEnd, grown, grown.length - after, after);
+			gapEnd = grown.length - after;
+			buf = grown;
+		}
+		inserted.toString().getChars(0, length, buf, gapStart);
+		gapStart += length;
+	}
+
+	// moves the gap so that it starts at 'offset'
+	private void moveGap(int offset) {
+		final var gap = gapEnd - gapStart;
+		if (offset < gapStart)
+			System.arraycopy(buf, offset, buf, offset + gap, gapStart - offset);
+		else
+			System.arraycopy(buf, gapEnd, buf, gapStart, offset - gapStart);
+		gapStart = offset;
+		gapEnd = offset + gap;
+	}
+
+	/*
+	 * the characters between 'from' (included) and 'to' (excluded), to be read by a 'MyLangScanner';
+	 * they are copied only if the gap is between them
+	 */
+	CharBuffer window(int from, int to) {
+		Objects.checkFromToIndex(from, to, length());
+		if (to <= gapStart)
+			return CharBuffer.wrap(buf, from, to - from);
+		if (from >= gapStart)
+			return CharBuffer.wrap(buf, from + gapEnd - gapStart, to - from);
+		final var chars = new char[to - from];
+		getChars(from, to, chars);
+		return CharBuffer.wrap(chars);
+	}
+
+	// copies the characters between 'from' (included) and 'to' (excluded) at the start of 'dst'
+	private void getChars(int from, int to, char[] dst) {
+		final var before = Math.max(0, Math.min(to, gapStart) - from);
+		System.arraycopy(buf, from, dst, 0, before);
+		if (from + before < to)
+			System.arraycopy(buf, from + before + gapEnd - gapStart, dst, before, to - from - before);
+	}
+
+	// number of line terminators '\n', '\r' and '\r\n' between 'from' (included) and 'to' (excluded)
+	int countTerminators(int from, int to) {
+		var count = 0;
+		for (var i = from; i < to; i++) {
+			final var c = charAt(i);
+			if (c == '\r' || c == '\n' && (i == from || charAt(i - 1) != '\r'))
+				count++;
+		}
+		return count;
+	}
+
+	// start of the line containing 'offset'
+	int lineStart(int offset) {
+		while (offset > 0 && charAt(offset - 1) != '\n' && charAt(offset - 1) != '\r')
+			offset--;
+		return offset;
+	}
+
+	// end of the line containing 'offset', before its terminator, if any
+	int lineEnd(int offset) {
+		final var length = length();
+		while (offset < length && charAt(offset) != '\n' && charAt(offset) != '\r')
+			offset++;
+		return offset;
+	}
+
+	// start of the line following the one containing 'offset', the length if there is none
+	int nextLineStart(int offset) {
+		final var end = lineEnd(offset);
+		if (end == length())
+			return end;
+		return end + (charAt(end) == '\r' && end + 1 < length() && charAt(end + 1) == '\n' ? 2 : 1);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		Objects.checkFromToIndex(start, end, length());
+		final var chars = new char[end - start];
+		getChars(start, end, chars);
+		return CharBuffer.wrap(chars);
+	}
+
+	@Override
+	public String toString() {
+		final var chars = new char[length()];
+		getChars(0, chars.length, chars);
+		return new String(chars);
+	}
+
+}
@@ -0,0 +1,325 @@
+package progetto.parser;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import progetto.parser.ast.NodeFactory;
+import progetto.parser.ast.Prog;
+import progetto.parser.ast.Stmt;
+import progetto.parser.ast.StmtList;
+import progetto.parser.ast.StmtSeq;
+import progetto.visitors.Visitor;
+
+import static java.util.Objects.requireNonNull;
+import static progetto.parser.TokenType.SEPARATOR;
+
+/*
+ * incremental front end for programs which are edited repeatedly
+ *
+ * the source is kept in a 'GapBuffer' and its tokens in a 'TokenRope', which an edit updates in time proportional
+ * to the length of the edit and of the lexemes around it, plus a logarithmic term
+ *
+ * the sequences of statements of the program keep their statements in a 'Rope', each one with the number of its
+ * tokens and the sequences of its blocks; the tokens changed since the last program parsed without syntax errors
+ * are tracked as a range of positions of its tokens, and the edited program is parsed again, but
+ * - a sequence or a statement whose tokens, including the one following it, are outside the range is reused as
+ *   it is, since its parsing does not depend on its context
+ * - a sequence which overlaps the range keeps the statements which end before it, and the statements which follow
+ *   the first one parsed again which ends where a statement of the previous program ended, after the range
+ * hence only the statements which enclose or touch the edited tokens are parsed again, and the other ones are
+ * split and joined in logarithmic time; the resulting program, and the syntax errors, if any, are the same as
+ * for a parser built from scratch on the edited source
+ */
+
+public class IncrementalParser {
+
+	private final TokenRope tokens; // the current source and its tokens
+	private Seq tree; // statements of the last program parsed without syntax errors, null if none
+	/*
+	 * the tokens of 'tree' from position 'damageStart' (included) to 'damageEnd' (excluded) have been replaced by
+	 * 'damageEnd - damageStart + damageDelta' tokens in the current source; no token has changed if 'damageStart'
+	 * is Integer.MAX_VALUE
+	 */
+	private int damageStart = Integer.MAX_VALUE;
+	private int damageEnd = Integer.MIN_VALUE;
+	private int damageDelta;
+	private Prog prog; // the program of the current source, null if it has not been parsed or has syntax errors
+	private final NodeFactory nodes = new NodeFactory(); // shared by all parses, so that variables have the same ids
+
+	/*
+	 * lexes 'source' from scratch; the program, or the syntax error, can be retrieved with 'parseProg()'
+	 */
+	public IncrementalParser(CharSequence source) {
+		tokens = new TokenRope(source);
+	}
+
+	// the current source
+	public String text() {
+		return tokens.text().toString();
+	}
+
+	/*
+	 * the tokens of the current source, up to the first lexical error; the buffer is built in time
+	 * proportional to the length of the source
+	 */
+	public TokenBuffer tokens() {
+		return tokens.toBuffer();
+	}
+
+	/*
+	 * returns the program of the current source; throws a ParserException if the source has syntax errors
+	 */
+	public Prog parseProg() throws ParserException {
+		if (prog == null) {
+			final var parser = new Reparser(tokens.tokenizer());
+			prog = parser.parseProg();
+			tree = parser.top;
+			damageStart = Integer.MAX_VALUE;
+			damageEnd = Integer.MIN_VALUE;
+			damageDelta = 0;
+		}
+		return prog;
+	}
+
+	/*
+	 * replaces 'removed' characters starting at 'offset' with 'inserted' and returns the program of the edited
+	 * source; throws a ParserException if the edited source has syntax errors, further edits are still allowed
+	 */
+	public Prog edit(int offset, int removed, CharSequence inserted) throws ParserException {
+		final var change = tokens.edit(offset, removed, inserted);
+		if (change != null) {
+			// the change of the tokens of 'tree', composed with the previous one
+			damageStart = Math.min(damageStart, change.start());
+			damageEnd = Math.max(damageEnd, change.end() - damageDelta);
+			damageDelta += change.delta();
+			prog = null;
+		}
+		return parseProg();
+	}
+
+	// position in 'tree' of the token at position 'index' of the current source, -1 if it has changed
+	private int toTree(int index) {
+		if (index < damageStart)
+			return index;
+		if (index >= damageEnd + damageDelta)
+			return index - damageDelta;
+		return -1;
+	}
+
+	// true if the tokens of 'tree' from 'start' to 'end', both included, are in the current source
+	private boolean unchanged(int start, int end) {
+		return end < damageStart || start >= damageEnd;
+	}
+
+	/*
+	 * sequence of statements, its statements can be reused by the sequences parsed after an edit;
+	 * it is visited, and printed, as the 'StmtList' with the same statements
+	 */
+	private static class Seq implements StmtSeq {
+		private final Rope<Item> items;
+
+		private Seq(Rope<Item> items) {
+			this.items = items;
+		}
+
+		// number of tokens of the sequence, which is also the position of the token following it, from its start
+		private int length() {
+			return items.tokens() - 1;
+		}
+
+		private List<Stmt> stmts() {
+			return new AbstractList<>() {
+				@Override
+				public Stmt get(int index) {
+					return items.get(index).stmt;
+				}
+
+				@Override
+				public int size() {
+					return items.size();
+				}
+
+				@Override
+				public Iterator<Stmt> iterator() {
+					final var it = items.iterator();
+					return new Iterator<>() {
+						@Override
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+
+						@Override
+						public Stmt next() {
+							return it.next().stmt;
+						}
+					};
+				}
+			};
+		}
+
+		@Override
+		public <T> T accept(Visitor<T> visitor) {
+			return visitor.visitStmtList(stmts());
+		}
+
+		@Override
+		public String toString() {
+			return StmtList.class.getSimpleName() + stmts();
+		}
+	}
+
+	// a sequence parsed inside a statement, 'start' is the position of its first token from the start of the statement
+	private record Nested(int start, Seq seq) {
+	}
+
+	/*
+	 * a statement of a sequence with the number of its tokens and the sequences of its blocks; the token
+	 * following the statement is counted as well, to compute the positions of the statements of a sequence
+	 */
+	private static class Item implements Rope.Measured {
+		private static final Nested[] NONE = {};
+
+		private final Stmt stmt;
+		private final int length; // number of tokens of the statement
+		private final Nested[] nested;
+
+		private Item(Stmt stmt, int length, Nested[] nested) {
+			this.stmt = stmt;
+			this.length = length;
+			this.nested = nested;
+		}
+
+		@Override
+		public int tokens() {
+			return length + 1;
+		}
+	}
+
+	/*
+	 * parser which reuses the sequences and statements of 'tree' and builds the new ones
+	 */
+	private class Reparser extends MyLangParser {
+		private final TokenRope.Cursor cursor;
+		private List<Nested> nested; // sequences parsed inside the current statement, null outside statements
+		private Seq top; // the sequence of the program
+
+		/*
+		 * the innermost sequence of 'tree', and one of its statements, found by 'find()': 'seqStart' and 'itemStart'
+		 * are the positions of their first tokens in 'tree', 'index' is the index of the statement, or the number
+		 * of statements if there is none
+		 */
+		private Seq seq;
+		private int seqStart;
+		private int index;
+		private int itemStart;
+
+		Reparser(TokenRope.Cursor cursor) {
+			super(cursor, false, nodes);
+			this.cursor = requireNonNull(cursor);
+		}
+
+		/*
+		 * finds the innermost sequence of 'tree' which contains the token at position 'pos' of 'tree', or the token
+		 * following its last statement, and the statement which contains that token, or which is followed by it
+		 */
+		private void find(int pos) {
+			seq = tree;
+			seqStart = 0;
+			while (true) {
+				index = seq.items.indexOfToken(pos - seqStart);
+				if (index == seq.items.size())
+					return;
+				itemStart = seqStart + seq.items.tokensBefore(index);
+				final var item = seq.items.get(index);
+				Nested inner = null;
+				for (var n : item.nested)
+					if (pos >= itemStart + n.start && pos <= itemStart + n.start + n.seq.length())
+						inner = n;
+				if (inner == null)
+					return;
+				seq = inner.seq;
+				seqStart = itemStart + inner.start;
+			}
+		}
+
+		@Override
+		protected StmtSeq parseStmtSeq() throws ParserException {
+			final var start = cursor.index();
+			final var seq = parseSeq(start);
+			if (nested != null)
+				nested.add(new Nested(start, seq));
+			else
+				top = seq;
+			return seq;
+		}
+
+		// parses a sequence whose first token is at position 'start'
+		private Seq parseSeq(int start) throws ParserException {
+			var kept = Rope.<Item>empty(); // statements of the previous sequence, which end before the changed tokens
+			final var old = tree == null ? -1 : toTree(start);
+			if (old >= 0) {
+				find(old);
+				if (seqStart == old) { // the sequence was there before
+					final var prev = seq;
+					if (unchanged(old, old + prev.length())) {
+						cursor.seek(start + prev.length());
+						return prev;
+					}
+					kept = prev.items.take(prev.items.indexOfToken(damageStart - old));
+					if (!kept.isEmpty()) { // the token following them is read again, it could be a lexical error
+						cursor.seek(start + kept.tokens() - 1);
+						nextToken();
+					}
+				}
+			}
+			final var items = new ArrayList<Item>();
+			while (true) {
+				items.add(parseItem());
+				if (cursor.tokenType() != SEPARATOR)
+					return new Seq(kept.concat(Rope.of(items)));
+				final var end = cursor.index();
+				if (tree != null && end >= damageEnd + damageDelta) {
+					find(end - damageDelta);
+					// the statements following one which ends there are the same
+					if (index < seq.items.size() && itemStart + seq.items.get(index).length == end - damageDelta) {
+						cursor.seek(seqStart + seq.length() + damageDelta);
+						return new Seq(kept.concat(Rope.of(items)).concat(seq.items.drop(index + 1)));
+					}
+				}
+				nextToken();
+			}
+		}
+
+		// parses a statement, or reuses the one of 'tree' with the same tokens
+		private Item parseItem() throws ParserException {
+			final var start = cursor.index();
+			final var old = tree == null ? -1 : toTree(start);
+			if (old >= 0) {
+				find(old);
+				if (index < seq.items.size() && itemStart == old) {
+					final var prev = seq.items.get(index);
+					if (unchanged(old, old + prev.length)) {
+						cursor.seek(start + prev.length);
+						return prev;
+					}
+				}
+			}
+			final var outer = nested;
+			nested = new ArrayList<>();
+			final var stmt = parseStmt();
+			final var inner = nested.isEmpty() ? Item.NONE : new Nested[nested.size()];
+			for (var i = 0; i < inner.length; i++)
+				inner[i] = new Nested(nested.get(i).start - start, nested.get(i).seq);
+			nested = outer;
+			return new Item(stmt, cursor.index() - start, inner);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + tokens.text().length() + " characters, " + tokens + ", "
+				+ (tree == null ? 0 : tree.items.size()) + " statements)";
+	}
+}
@@ -1,6 +1,10 @@
 package progetto.parser;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 import progetto.parser.ast.*;
 
 import static java.util.Objects.requireNonNull;
@@ -22,13 +26,29 @@ Atom ::= 'fst' Atom | 'snd' Atom | '-' Atom | '!' Atom | BOOL | NUM | IDENT | '(
 
 public class MyLangParser implements Parser {
 
-	private final MyLangTokenizer tokenizer; // the tokenizer used by the parser
+	private final Tokenizer tokenizer; // the tokenizer used by the parser
+	private final boolean precedenceClimbing; // if true, binary expressions are parsed by 'parseBinary()'
+	private final NodeFactory nodes; // builds the expression nodes
+	private List<ParserException> errors; // syntax errors found so far when recovering from them, null otherwise
+
+	/*
+	 * precedence levels of the binary operators, indexed by the ordinal of their token type, 0 for other tokens;
+	 * all binary operators are left-associative
+	 */
+	private static final int[] precedence = new int[TokenType.values().length];
+	static {
+		precedence[PAIR_OP.ordinal()] = 1;
+		precedence[AND.ordinal()] = 2;
+		precedence[EQ.ordinal()] = 3;
+		precedence[PLUS.ordinal()] = 4;
+		precedence[TIMES.ordinal()] = 5;
+	}
 
 	/*
 	 * reads the next token through the  tokenizer associated with the
 	 * parser; TokenizerExceptions are chained into corresponding ParserExceptions
 	 */
-	private void nextToken() throws ParserException {
+	protected void nextToken() throws ParserException {
 		try {
 			tokenizer.next();
 		} catch (TokenizerException e) {
@@ -69,8 +89,23 @@ public class MyLangParser implements Parser {
 	}
 
 	// associates the parser with a corresponding non-null  tokenizer
-	public MyLangParser(MyLangTokenizer tokenizer) {
+	public MyLangParser(Tokenizer tokenizer) {
+		this(tokenizer, false);
+	}
+
+	/*
+	 * as above; if 'precedenceClimbing' is true, expressions are parsed by precedence climbing
+	 * instead of one method for each precedence level
+	 */
+	public MyLangParser(Tokenizer tokenizer, boolean precedenceClimbing) {
+		this(tokenizer, precedenceClimbing, new NodeFactory());
+	}
+
+	// as above; expression nodes are built by 'nodes', which may share equal subexpressions
+	public MyLangParser(Tokenizer tokenizer, boolean precedenceClimbing, NodeFactory nodes) {
 		this.tokenizer = requireNonNull(tokenizer);
+		this.precedenceClimbing = precedenceClimbing;
+		this.nodes = requireNonNull(nodes);
 	}
 
 	/*
@@ -84,6 +119,43 @@ public class MyLangParser implements Parser {
 		return prog;
 	}
 
+	/*
+	 * parses a program Prog ::= StmtSeq EOF one top-level statement at a time: each statement is passed to 'action'
+	 * as soon as it has been parsed, before the following ones are parsed, and no reference to it is kept
+	 */
+	public void parseProg(Consumer<Stmt> action) throws ParserException {
+		nextToken(); // one look-ahead symbol
+		action.accept(parseStmt());
+		while (tokenizer.tokenType() == SEPARATOR) {
+			nextToken();
+			action.accept(parseStmt());
+		}
+		match(EOF); // last token must have type EOF
+	}
+
+	/*
+	 * parses a program recovering from syntax errors at statement boundaries: each error is added to 'errors' and
+	 * the tokens up to the end of the statement, that is, the next ';' or '}' outside nested blocks and vectors,
+	 * are skipped; the first error is the one thrown by 'parseProg()', the following ones may be caused by the
+	 * previous ones; lexical errors end parsing
+	 * returns the program if no error has been found, null otherwise
+	 */
+	public Prog parseProg(List<ParserException> errors) {
+		this.errors = requireNonNull(errors);
+		final var count = errors.size();
+		try {
+			nextToken(); // one look-ahead symbol
+			final var stmts = new ArrayList<Stmt>();
+			parseStmts(stmts, EOF);
+			return errors.size() == count ? new MyLangProg(new StmtList(stmts)) : null;
+		} catch (ParserException e) { // lexical error
+			errors.add(e);
+			return null;
+		} finally {
+			this.errors = null;
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		if (tokenizer != null)
@@ -91,25 +163,94 @@ public class MyLangParser implements Parser {
 	}
 
 	/*
-	 * parses a non empty sequence of statements, binary operator SEPARATOR is right
-	 * associative StmtSeq ::= Stmt (';' StmtSeq)?
+	 * parses a non empty sequence of statements StmtSeq ::= Stmt (';' StmtSeq)?
+	 * statements are collected by a loop in a flat list, so that the stack depth does not depend on their number;
+	 * overridden by 'IncrementalParser' to reuse the sequences and statements parsed before an edit
 	 */
-	private StmtSeq parseStmtSeq() throws ParserException {
-		final var stmt = parseStmt();
-		StmtSeq stmtSeq;
-		if (tokenizer.tokenType() == SEPARATOR) {
+	protected StmtSeq parseStmtSeq() throws ParserException {
+		final var stmts = new ArrayList<Stmt>();
+		if (errors != null) { // the block is parsed by 'parseBlock()'
+			parseStmts(stmts, CLOSE_BLOCK);
+			return new StmtList(stmts);
+		}
+		stmts.add(parseStmt());
+		while (tokenizer.tokenType() == SEPARATOR) {
+			nextToken();
+			stmts.add(parseStmt());
+		}
+		return new StmtList(stmts);
+	}
+
+	/*
+	 * parses a sequence of statements followed by 'end', recovering from syntax errors; on a syntax error inside
+	 * a statement, the statement is skipped, tokens following a statement which are neither ';' nor 'end' are
+	 * reported and skipped up to the next ';'; a stray '}' is skipped at top level
+	 */
+	private void parseStmts(List<Stmt> stmts, TokenType end) throws ParserException {
+		while (true) {
+			try {
+				stmts.add(parseStmt());
+			} catch (ParserException e) {
+				if (e.getCause() instanceof TokenizerException)
+					throw e;
+				errors.add(e);
+				skipStmt();
+			}
+			final var found = tokenizer.tokenType();
+			if (found == SEPARATOR) {
+				nextToken();
+				continue;
+			}
+			if (found == end || found == EOF)
+				return;
+			try {
+				match(end);
+			} catch (ParserException e) {
+				errors.add(e);
+			}
+			if (found != CLOSE_BLOCK)
+				skipStmt();
+			final var next = tokenizer.tokenType();
+			if (next != SEPARATOR && (next != CLOSE_BLOCK || end != EOF))
+				return;
+			nextToken();
+		}
+	}
+
+	// skips the tokens up to the next ';' or '}' which are not nested in a block or vector, or up to EOF
+	private void skipStmt() throws ParserException {
+		var depth = 0;
+		while (true) {
+			switch (tokenizer.tokenType()) {
+			case EOF:
+				return;
+			case SEPARATOR:
+				if (depth == 0)
+					return;
+				break;
+			case CLOSE_BLOCK:
+				if (depth == 0)
+					return;
+				depth--;
+				break;
+			case CLOSE_VECTOR:
+				if (depth > 0)
+					depth--;
+				break;
+			case OPEN_BLOCK, OPEN_VECTOR:
+				depth++;
+				break;
+			default:
+			}
 			nextToken();
-			stmtSeq = parseStmtSeq();
-		} else
-			stmtSeq = new EmptyStmtSeq();
-		return new NonEmptyStmtSeq(stmt, stmtSeq);
+		}
 	}
 
 	/*
 	 * parses a statement Stmt ::= 'var'? IDENT '=' Exp | 'print' Exp | 'if' '(' Exp
 	 * ')' Block ('else' Block)?
 	 */
-	private Stmt parseStmt() throws ParserException {
+	protected Stmt parseStmt() throws ParserException {
 		return switch (tokenizer.tokenType()) {
 		case PRINT -> parsePrintStmt();
 		case VAR -> parseVarStmt();
@@ -176,10 +317,12 @@ public class MyLangParser implements Parser {
 	 */
 
 	private Exp parseExp() throws ParserException {
+		if (precedenceClimbing)
+			return parseBinary(1);
 		var exp = parseAnd();
 		while (tokenizer.tokenType() == PAIR_OP) {
 			nextToken();
-			exp = new PairLit(exp, parseAnd());
+			exp = nodes.pairLit(exp, parseAnd());
 		}
 		return exp;
 	}
@@ -192,7 +335,7 @@ public class MyLangParser implements Parser {
 		var exp = parseEq();
 		while (tokenizer.tokenType() == AND) {
 			nextToken();
-			exp = new And(exp, parseEq());
+			exp = nodes.and(exp, parseEq());
 		}
 		return exp;
 	}
@@ -205,7 +348,7 @@ public class MyLangParser implements Parser {
 		var exp = parseAdd();
 		while (tokenizer.tokenType() == EQ) {
 			nextToken();
-			exp = new Eq(exp, parseAdd());
+			exp = nodes.eq(exp, parseAdd());
 		}
 		return exp;
 	}
@@ -218,7 +361,7 @@ public class MyLangParser implements Parser {
 		var exp = parseMul();
 		while (tokenizer.tokenType() == PLUS) {
 			nextToken();
-			exp = new Add(exp, parseMul());
+			exp = nodes.add(exp, parseMul());
 		}
 		return exp;
 	}
@@ -231,7 +374,32 @@ public class MyLangParser implements Parser {
 		var exp = parseAtom();
 		while (tokenizer.tokenType() == TIMES) {
 			nextToken();
-			exp = new Mul(exp, parseAtom());
+			exp = nodes.mul(exp, parseAtom());
+		}
+		return exp;
+	}
+
+	/*
+	 * parses expressions by precedence climbing, starting from the operators with precedence at least 'minPrec';
+	 * builds the same trees as the cascade 'parseExp()', 'parseAnd()', ..., 'parseMul()', but an atom is
+	 * parsed with one call, and a chain of operators with the same precedence with a loop
+	 */
+	private Exp parseBinary(int minPrec) throws ParserException {
+		var exp = parseAtom();
+		var prec = precedence[tokenizer.tokenType().ordinal()];
+		while (prec >= minPrec) {
+			final var op = tokenizer.tokenType();
+			nextToken();
+			final var right = parseBinary(prec + 1); // left-associative operators
+			exp = switch (op) {
+			case PAIR_OP -> nodes.pairLit(exp, right);
+			case AND -> nodes.and(exp, right);
+			case EQ -> nodes.eq(exp, right);
+			case PLUS -> nodes.add(exp, right);
+			case TIMES -> nodes.mul(exp, right);
+			default -> throw new AssertionError("Fatal error: " + op + " is not a binary operator");
+			};
+			prec = precedence[tokenizer.tokenType().ordinal()];
 		}
 		return exp;
 	}
@@ -259,21 +427,21 @@ public class MyLangParser implements Parser {
 	private IntLiteral parseNum() throws ParserException {
 		final var val = tokenizer.intValue();
 		consume(NUM); // or nextToken() since NUM has already been recognized
-		return new IntLiteral(val);
+		return nodes.intLiteral(val);
 	}
 
 	// parses boolean literals
 	private BoolLiteral parseBoolean() throws ParserException {
 		final var val = tokenizer.boolValue();
 		consume(BOOL); // or nextToken() since BOOL has already been recognized
-		return new BoolLiteral(val);
+		return nodes.boolLiteral(val);
 	}
 
 	// parses variable identifiers
 	private Variable parseVariable() throws ParserException {
 		final var name = tokenizer.tokenString();
 		consume(IDENT); // this check is necessary for parsing correctly the 'var' statement
-		return new Variable(name);
+		return nodes.variable(name);
 	}
 
 	/*
@@ -281,7 +449,7 @@ public class MyLangParser implements Parser {
 	 */
 	private Sign parseMinus() throws ParserException {
 		consume(MINUS); // or nextToken() since MINUS has already been recognized
-		return new Sign(parseAtom());
+		return nodes.sign(parseAtom());
 	}
 
 	/*
@@ -289,7 +457,7 @@ public class MyLangParser implements Parser {
 	 */
 	private Fst parseFst() throws ParserException {
 		consume(FST); // or nextToken() since FST has already been recognized
-		return new Fst(parseAtom());
+		return nodes.fst(parseAtom());
 	}
 
 	/*
@@ -297,7 +465,7 @@ public class MyLangParser implements Parser {
 	 */
 	private Snd parseSnd() throws ParserException {
 		consume(SND); // or nextToken() since SND has already been recognized
-		return new Snd(parseAtom());
+		return nodes.snd(parseAtom());
 	}
 
 	/*
@@ -305,7 +473,7 @@ public class MyLangParser implements Parser {
 	 */
 	private Not parseNot() throws ParserException {
 		consume(NOT); // or nextToken() since NOT has already been recognized
-		return new Not(parseAtom());
+		return nodes.not(parseAtom());
 	}
 
 	/*
@@ -342,7 +510,7 @@ public class MyLangParser implements Parser {
 		consume(SEPARATOR);
 		final var exp2 = parseExp();
 		consume(CLOSE_VECTOR);
-		return new Vector(exp1, exp2);
+		return nodes.vector(exp1, exp2);
 	}
 
 }
\ No newline at end of file
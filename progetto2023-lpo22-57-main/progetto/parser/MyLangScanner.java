@@ -0,0 +1,503 @@
+package progetto.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+import static java.util.Objects.requireNonNull;
+import static progetto.parser.TokenType.*;
+
+/*
+ * hand-written character scanner for MyLang, alternative to the regex based 'MyLangTokenizer'
+ *
+ * the scanner recognizes the same lexical categories and reproduces the same token streams and error
+ * messages of 'MyLangTokenizer', but it works directly on a reusable buffer of characters:
+ * no regular expression is matched and no String is allocated for skipped lexemes, keywords, symbols and numbers;
+ * the lexeme of the current token is materialized only on demand by 'tokenString()'
+ *
+ * the scanner can read its input in two ways:
+ * - from a 'Reader', line by line, by reusing the same buffer for all lines
+ * - from a 'CharBuffer' containing the whole source, for instance a memory-mapped file; in this case
+ *   the text is scanned in place and line numbers are computed from offsets only when they are requested
+ */
+
+public class MyLangScanner implements Tokenizer {
+
+	private static final int BUF_SIZE = 8192;
+	private static final char LINE_SEPARATOR = 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+	private final Reader reader; // the underlying character stream, null if the whole source is in 'buf'
+	private char[] in; // chunk of characters read from 'reader'
+	private int inPos; // next character to be consumed in 'in'
+	private int inLen; // number of valid characters in 'in'
+	private int inOffset; // offset in the source of the first character in 'in'
+	private int lineOffset; // offset in the source of the currently processed line
+	private boolean skipLF; // true if the last line was terminated by '\r', so that a following '\n' must be skipped
+
+	private char[] buf; // currently processed line, without terminator, or the whole source
+	private int pos; // current position of the scanner in 'buf'
+	private int limit; // end of the currently processed line, or of the whole source
+	private int lineNumber; // number of lines read so far, used only when reading from 'reader'
+
+	private int base; // start of the whole source in 'buf'
+	private int linesBefore; // number of lines preceding the source, when it is part of a larger text
+	private int countedPos; // offset in 'buf' up to which line terminators have been counted
+	private int countedLines; // number of line terminators in 'buf' between 'base' and 'countedPos'
+
+	private TokenType tokenType; // the type of the currently recognized token
+	private int tokenStart; // start position of the current token in 'buf'
+	private int tokenEnd; // end position (exclusive) of the current token in 'buf'
+	private String tokenString; // the lexeme of the current token, materialized lazily
+	private boolean eofAfterSkip; // true if EOF has been reached right after a skipped lexeme
+	private int intValue; // the integer value if the currently recognized token has type NUM
+	private boolean boolValue; // the boolean value if the currently recognized token has type BOOL
+
+	public MyLangScanner(Reader reader) {
+		this.reader = requireNonNull(reader);
+		in = new char[BUF_SIZE];
+		buf = new char[256];
+	}
+
+	/*
+	 * scans the whole source in 'text', from its position to its limit; the characters are not copied
+	 * if 'text' is backed by an accessible array
+	 */
+	public MyLangScanner(CharBuffer text) {
+		this(text, 1);
+	}
+
+	/*
+	 * as above, but the first line of 'text' has number 'firstLine'; used when 'text' is a chunk of a larger source
+	 * which starts at the beginning of a line
+	 */
+	public MyLangScanner(CharBuffer text, int firstLine) {
+		reader = null;
+		linesBefore = firstLine - 1;
+		if (text.hasArray()) {
+			buf = text.array();
+			base = text.arrayOffset() + text.position();
+			limit = text.arrayOffset() + text.limit();
+		} else {
+			buf = new char[text.remaining()];
+			text.get(buf);
+			limit = buf.length;
+		}
+		pos = countedPos = base;
+		tokenStart = -1; // no token has been scanned yet
+	}
+
+	/*
+	 * reads the next line into 'buf' with the same line terminators of 'BufferedReader.readLine()':
+	 * '\n', '\r' or '\r\n'; returns false if EOF has been reached
+	 */
+	private boolean readLine() throws IOException {
+		var len = 0;
+		while (true) {
+			if (inPos == inLen) {
+				inOffset += inLen;
+				inLen = reader.read(in, 0, BUF_SIZE);
+				inPos = 0;
+				if (inLen <= 0) {
+					inLen = 0;
+					if (len == 0)
+						return false;
+					break;
+				}
+			}
+			final var c = in[inPos++];
+			if (skipLF) {
+				skipLF = false;
+				if (c == '\n')
+					continue;
+			}
+			if (c == '\n')
+				break;
+			if (c == '\r') {
+				skipLF = true;
+				break;
+			}
+			if (len == 0)
+				lineOffset = inOffset + inPos - 1;
+			if (len == buf.length) {
+				final var newBuf = new char[2 * len];
+				System.arraycopy(buf, 0, newBuf, 0, len);
+				buf = newBuf;
+			}
+			buf[len++] = c;
+		}
+		pos = 0;
+		limit = len;
+		lineNumber++;
+		return true;
+	}
+
+	private boolean hasNext() throws TokenizerException { // checks whether there are still lexemes
+		if (reader == null) { // whole source: line terminators are skipped, as done by 'readLine()'
+			while (pos < limit && (buf[pos] == '\n' || buf[pos] == '\r'))
+				pos++;
+			return pos < limit;
+		}
+		while (pos == limit) { // reads the next non empty line, if any
+			try {
+				if (!readLine())
+					return false; // EOF reached
+			} catch (IOException e) {
+				throw new TokenizerException(e);
+			}
+		}
+		return true;
+	}
+
+	// characters matched by '\s' in Java regular expressions, except for line terminators
+	private static boolean isBlank(char c) {
+		return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+	}
+
+	// characters matched by '\w' in Java regular expressions
+	private static boolean isIdentPart(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+	}
+
+	private static boolean isLetter(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+	}
+
+	// line terminators not matched by '.' in Java regular expressions
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+	}
+
+	// checks whether 'keyword' occurs in 'buf' at position 'pos'
+	private boolean lookingAt(String keyword) {
+		final var len = keyword.length();
+		if (limit - pos < len)
+			return false;
+		for (var i = 1; i < len; i++) // the first character has already been checked
+			if (buf[pos + i] != keyword.charAt(i))
+				return false;
+		return true;
+	}
+
+	/*
+	 * emulates the word boundary '\b' of Java regular expressions after the keyword 'if', the only one
+	 * which requires it in the regular expression of 'MyLangTokenizer'
+	 */
+	private boolean isWordBoundary(int at) {
+		if (at == limit)
+			return true;
+		final var cp = Character.codePointAt(buf, at, limit);
+		return !(Character.isLetterOrDigit(cp) || cp == '_' || Character.getType(cp) == Character.NON_SPACING_MARK);
+	}
+
+	/*
+	 * recognizes a keyword at position 'pos', if any; keywords are tried in the same order as in the regular
+	 * expression of 'MyLangTokenizer', where only the last alternative 'if' is followed by a word boundary
+	 */
+	private TokenType keyword() {
+		switch (buf[pos]) {
+		case 'f':
+			if (lookingAt("foreach"))
+				return FOREACH;
+			if (lookingAt("fst"))
+				return FST;
+			if (lookingAt("false"))
+				return BOOL;
+			return null;
+		case 'p':
+			return lookingAt("print") ? PRINT : null;
+		case 'i':
+			if (lookingAt("in"))
+				return IN;
+			return lookingAt("if") && isWordBoundary(pos + 2) ? IF : null;
+		case 'v':
+			return lookingAt("var") ? VAR : null;
+		case 'e':
+			return lookingAt("else") ? ELSE : null;
+		case 't':
+			return lookingAt("true") ? BOOL : null;
+		case 's':
+			return lookingAt("snd") ? SND : null;
+		default:
+			return null;
+		}
+	}
+
+	// length of the keyword or symbol of type 'type', -1 for the other categories
+	private static int fixedLength(TokenType type) {
+		return switch (type) {
+		case AND, EQ, IF, IN -> 2;
+		case VAR, FST, SND -> 3;
+		case ELSE -> 4;
+		case PRINT -> 5;
+		case FOREACH -> 7;
+		case BOOL, SKIP, IDENT, NUM, EOF -> -1;
+		default -> 1;
+		};
+	}
+
+	/*
+	 * recognizes the lexeme starting at 'pos' and sets 'tokenType' and 'tokenEnd' accordingly;
+	 * the lexical categories are tried in the same order as in 'MyLangTokenizer':
+	 * symbols, keywords, skipped lexemes, identifiers and numbers
+	 */
+	private void scan() throws TokenizerException {
+		final var c = buf[pos];
+		var end = pos + 1;
+		TokenType type = switch (c) {
+		case '=' -> {
+			if (end < limit && buf[end] == '=') {
+				end++;
+				yield EQ;
+			}
+			yield ASSIGN;
+		}
+		case '&' -> {
+			if (end < limit && buf[end] == '&') {
+				end++;
+				yield AND;
+			}
+			yield null;
+		}
+		case '-' -> MINUS;
+		case '+' -> PLUS;
+		case '*' -> TIMES;
+		case '!' -> NOT;
+		case ';' -> SEPARATOR;
+		case ',' -> PAIR_OP;
+		case '(' -> OPEN_PAR;
+		case ')' -> CLOSE_PAR;
+		case '{' -> OPEN_BLOCK;
+		case '}' -> CLOSE_BLOCK;
+		case '[' -> OPEN_VECTOR;
+		case ']' -> CLOSE_VECTOR;
+		default -> null;
+		};
+		if (type == null && isLetter(c)) {
+			type = keyword();
+			if (type == BOOL) {
+				boolValue = c == 't';
+				end = pos + (boolValue ? 4 : 5);
+			} else if (type != null)
+				end = pos + fixedLength(type);
+			else {
+				while (end < limit && isIdentPart(buf[end]))
+					end++;
+				type = IDENT;
+			}
+		} else if (type == null && isBlank(c)) {
+			while (end < limit && isBlank(buf[end]))
+				end++;
+			type = SKIP;
+		} else if (type == null && c == '/' && end < limit && buf[end] == '/') {
+			while (end < limit && !isLineTerminator(buf[end]))
+				end++;
+			type = SKIP;
+		} else if (type == null && c >= '0' && c <= '9') {
+			if (c != '0')
+				while (end < limit && buf[end] >= '0' && buf[end] <= '9')
+					end++;
+			type = NUM;
+			intValue = parseNum(pos, end);
+		} else if (type == null)
+			unrecognizedToken();
+		tokenType = type;
+		tokenEnd = end;
+	}
+
+	/*
+	 * computes the value of a NUM lexeme; out of range values are delegated to 'Integer.decode()'
+	 * to throw the same exception as 'MyLangTokenizer'
+	 */
+	private int parseNum(int start, int end) {
+		var val = 0L;
+		for (var i = start; i < end; i++) {
+			val = val * 10 + buf[i] - '0';
+			if (val > Integer.MAX_VALUE)
+				return Integer.decode(new String(buf, start, end - start));
+		}
+		return (int) val;
+	}
+
+	private void unrecognizedToken() throws TokenizerException {
+		throw new TokenizerException("on line " + lineAt(pos) + " unrecognized token starting at '"
+				+ new String(buf, pos, lineEnd(pos) - pos) + "'");
+	}
+
+	@Override
+	public TokenType next() throws TokenizerException {
+		tokenString = null;
+		tokenType = null;
+		do {
+			if (!hasNext()) {
+				eofAfterSkip = tokenType == SKIP;
+				return tokenType = EOF;
+			}
+			tokenStart = pos;
+			scan();
+			pos = tokenEnd; // advances in the buffer
+		} while (tokenType == SKIP); // keeps advancing when skippable tokens are recognized
+		return tokenType;
+	}
+
+	private void checkLegalState() {
+		if (tokenType == null)
+			throw new IllegalStateException("No token was recognized");
+	}
+
+	private void checkLegalState(TokenType tokenType) {
+		if (this.tokenType != tokenType)
+			throw new IllegalStateException("No token of type " + tokenType + " was recognized");
+	}
+
+	// lexeme of the current token; keywords and symbols are mapped to constant strings
+	private String lexeme(TokenType type) {
+		return switch (type) {
+		case BOOL -> boolValue ? "true" : "false";
+		case SKIP, IDENT, NUM, EOF -> new String(buf, tokenStart, tokenEnd - tokenStart);
+		default -> fixedLexeme(type);
+		};
+	}
+
+	// lexeme of the keywords and symbols of type 'type', null for the other categories
+	static String fixedLexeme(TokenType type) {
+		return switch (type) {
+		case ASSIGN -> "=";
+		case MINUS -> "-";
+		case PLUS -> "+";
+		case TIMES -> "*";
+		case NOT -> "!";
+		case AND -> "&&";
+		case EQ -> "==";
+		case SEPARATOR -> ";";
+		case PAIR_OP -> ",";
+		case OPEN_PAR -> "(";
+		case CLOSE_PAR -> ")";
+		case OPEN_BLOCK -> "{";
+		case CLOSE_BLOCK -> "}";
+		case OPEN_VECTOR -> "[";
+		case CLOSE_VECTOR -> "]";
+		case PRINT -> "print";
+		case VAR -> "var";
+		case IF -> "if";
+		case ELSE -> "else";
+		case FST -> "fst";
+		case SND -> "snd";
+		case FOREACH -> "foreach";
+		case IN -> "in";
+		default -> null;
+		};
+	}
+
+	/*
+	 * offset of the most recently recognized token from the start of the source, with line terminators counted
+	 * as in the source; for EOF it is the length of the source
+	 */
+	public int tokenOffset() {
+		checkLegalState();
+		if (tokenType == EOF)
+			return reader != null ? inOffset + inPos : limit - base;
+		return reader != null ? lineOffset + tokenStart : tokenStart - base;
+	}
+
+	/*
+	 * offset of the end of the most recently recognized token, which is not EOF, from the start of the source;
+	 * only for sources entirely in 'buf', see 'TokenRope'
+	 */
+	int tokenEndOffset() {
+		checkLegalState();
+		return tokenEnd - base;
+	}
+
+	/*
+	 * offset from the start of the source of the lexeme where the last lexical error has been found;
+	 * only for sources entirely in 'buf', see 'TokenRope'
+	 */
+	int errorOffset() {
+		return tokenStart - base;
+	}
+
+	@Override
+	public String tokenString() { // lexeme of the most recently recognized token, if any
+		checkLegalState();
+		/*
+		 * as in 'MyLangTokenizer', the lexeme of EOF is the last skipped lexeme, if any, null otherwise;
+		 * the skipped lexeme is still available in 'buf' since no line has been read after it
+		 */
+		if (tokenString == null && (tokenType != EOF || eofAfterSkip))
+			tokenString = lexeme(tokenType);
+		return tokenString;
+	}
+
+	@Override
+	public boolean boolValue() { // boolean value of the most recently recognized token, if of type BOOL
+		checkLegalState(BOOL);
+		return boolValue;
+	}
+
+	@Override
+	public int intValue() { // integer value of the most recently recognized token, if of type NUM
+		checkLegalState(NUM);
+		return intValue;
+	}
+
+	@Override
+	public TokenType tokenType() { // type of the most recently recognized token, if any
+		checkLegalState();
+		return tokenType;
+	}
+
+	// end of the line containing offset 'at'; when reading from 'reader', 'buf' contains just one line
+	private int lineEnd(int at) {
+		if (reader != null)
+			return limit;
+		while (at < limit && buf[at] != '\n' && buf[at] != '\r')
+			at++;
+		return at;
+	}
+
+	/*
+	 * counts the line terminators '\n', '\r' and '\r\n' in 'buf' before offset 'at'; the count is resumed from
+	 * the last computed one when possible, so that increasing offsets are scanned only once
+	 */
+	private int terminatorsBefore(int at) {
+		if (at < countedPos) {
+			countedPos = base;
+			countedLines = 0;
+		}
+		for (var i = countedPos; i < at; i++)
+			if (buf[i] == '\r' || buf[i] == '\n' && (i == base || buf[i - 1] != '\r'))
+				countedLines++;
+		countedPos = at;
+		return countedLines;
+	}
+
+	/*
+	 * line number of the character at offset 'at'; at the end of the source, as for 'LineNumberReader',
+	 * this is the number of lines of the source, where the last line may have no terminator
+	 */
+	private int lineAt(int at) {
+		if (reader != null)
+			return lineNumber;
+		final var lines = linesBefore + terminatorsBefore(at);
+		if (at < limit || at > base && buf[at - 1] != '\n' && buf[at - 1] != '\r')
+			return lines + 1;
+		return lines;
+	}
+
+	@Override
+	public int getLineNumber() {
+		if (reader != null)
+			return lineNumber;
+		if (tokenType == EOF)
+			return lineAt(limit);
+		return tokenStart < 0 ? 0 : lineAt(tokenStart);
+	}
+
+	@Override
+	public void close() throws IOException { // tokenizers are auto-closeable
+		if (reader != null)
+			reader.close();
+	}
+
+}
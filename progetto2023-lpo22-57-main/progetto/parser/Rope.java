@@ -0,0 +1,335 @@
+package progetto.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * immutable sequence of elements which can be split and concatenated in logarithmic time, see 'IncrementalParser'
+ *
+ * the elements are stored in a treap: a binary tree where the elements are in order, and the nodes are in heap
+ * order with respect to random priorities, so that the expected depth is logarithmic; operations build new
+ * nodes only along the paths they visit, the other ones are shared with the original sequence, which is
+ * not changed
+ *
+ * each node also stores the sums of the measures of the elements of its subtree, so that an element can be
+ * located by the number of tokens or characters which precede it
+ */
+
+final class Rope<E extends Rope.Measured> implements Iterable<E> {
+
+	// measures of the elements of a rope
+	interface Measured {
+
+		// number of token positions spanned by the element
+		int tokens();
+
+		// number of characters spanned by the element
+		default int chars() {
+			return 0;
+		}
+
+		// number of line terminators spanned by the element
+		default int lines() {
+			return 0;
+		}
+	}
+
+	private static final class Node<E extends Measured> {
+		private final E elem;
+		private Node<E> left, right; // only set while the node is built
+		private final int priority;
+		private int size, tokens, chars, lines; // sums over the subtree
+
+		private Node(E elem, int priority) {
+			this.elem = elem;
+			this.priority = priority;
+		}
+
+		private Node(Node<E> left, Node<E> node, Node<E> right) {
+			this(node.elem, node.priority);
+			this.left = left;
+			this.right = right;
+			update();
+		}
+
+		private void update() {
+			size = size(left) + 1 + size(right);
+			tokens = tokens(left) + elem.tokens() + tokens(right);
+			chars = chars(left) + elem.chars() + chars(right);
+			lines = lines(left) + elem.lines() + lines(right);
+		}
+	}
+
+	private static final Rope<?> EMPTY = new Rope<>(null);
+
+	private final Node<E> root;
+
+	private Rope(Node<E> root) {
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <E extends Measured> Rope<E> empty() {
+		return (Rope<E>) EMPTY;
+	}
+
+	private static <E extends Measured> Rope<E> of(Node<E> root) {
+		return root == null ? empty() : new Rope<>(root);
+	}
+
+	// rope with the elements of 'elems', built in linear time
+	static <E extends Measured> Rope<E> of(List<E> elems) {
+		final var random = ThreadLocalRandom.current();
+		// the right spine of the tree built so far, whose priorities are decreasing
+		final var spine = new ArrayList<Node<E>>();
+		for (var elem : elems) {
+			final var node = new Node<>(Objects.requireNonNull(elem), random.nextInt());
+			Node<E> last = null;
+			while (!spine.isEmpty() && spine.get(spine.size() - 1).priority < node.priority)
+				last = spine.remove(spine.size() - 1);
+			node.left = last;
+			if (!spine.isEmpty())
+				spine.get(spine.size() - 1).right = node;
+			spine.add(node);
+		}
+		if (spine.isEmpty())
+			return empty();
+		final var root = spine.get(0);
+		updateAll(root);
+		return new Rope<>(root);
+	}
+
+	// computes the sums of all the nodes of the subtree 'node', children first
+	private static <E extends Measured> void updateAll(Node<E> node) {
+		if (node.left != null)
+			updateAll(node.left);
+		if (node.right != null)
+			updateAll(node.right);
+		node.update();
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static int tokens(Node<?> node) {
+		return node == null ? 0 : node.tokens;
+	}
+
+	private static int chars(Node<?> node) {
+		return node == null ? 0 : node.chars;
+	}
+
+	private static int lines(Node<?> node) {
+		return node == null ? 0 : node.lines;
+	}
+
+	int size() {
+		return size(root);
+	}
+
+	boolean isEmpty() {
+		return root == null;
+	}
+
+	int tokens() {
+		return tokens(root);
+	}
+
+	int chars() {
+		return chars(root);
+	}
+
+	int lines() {
+		return lines(root);
+	}
+
+	E get(int index) {
+		Objects.checkIndex(index, size());
+		var node = root;
+		while (true) {
+			final var left = size(node.left);
+			if (index < left)
+				node = node.left;
+			else if (index == left)
+				return node.elem;
+			else {
+				index -= left + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	// index of the element spanning token position 'token', the size if there is none
+	int indexOfToken(int token) {
+		var index = 0;
+		for (var node = root; node != null;) {
+			final var left = tokens(node.left);
+			if (token < left)
+				node = node.left;
+			else if (token < left + node.elem.tokens())
+				return index + size(node.left);
+			else {
+				token -= left + node.elem.tokens();
+				index += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return index;
+	}
+
+	// index of the element spanning character 'offset', the size if there is none
+	int indexOfChar(int offset) {
+		var index = 0;
+		for (var node = root; node != null;) {
+			final var left = chars(node.left);
+			if (offset < left)
+				node = node.left;
+			else if (offset < left + node.elem.chars())
+				return index + size(node.left);
+			else {
+				offset -= left + node.elem.chars();
+				index += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return index;
+	}
+
+	// number of token positions spanned by the elements before 'index'
+	int tokensBefore(int index) {
+		var tokens = 0;
+		for (var node = root; node != null;) {
+			final var left = size(node.left);
+			if (index <= left)
+				node = node.left;
+			else {
+				tokens += tokens(node.left) + node.elem.tokens();
+				index -= left + 1;
+				node = node.right;
+			}
+		}
+		return tokens;
+	}
+
+	// number of characters spanned by the elements before 'index'
+	int charsBefore(int index) {
+		var chars = 0;
+		for (var node = root; node != null;) {
+			final var left = size(node.left);
+			if (index <= left)
+				node = node.left;
+			else {
+				chars += chars(node.left) + node.elem.chars();
+				index -= left + 1;
+				node = node.right;
+			}
+		}
+		return chars;
+	}
+
+	// number of line terminators spanned by the elements before 'index'
+	int linesBefore(int index) {
+		var lines = 0;
+		for (var node = root; node != null;) {
+			final var left = size(node.left);
+			if (index <= left)
+				node = node.left;
+			else {
+				lines += lines(node.left) + node.elem.lines();
+				index -= left + 1;
+				node = node.right;
+			}
+		}
+		return lines;
+	}
+
+	// the first 'count' elements
+	Rope<E> take(int count) {
+		Objects.checkIndex(count, size() + 1);
+		return count == size() ? this : of(take(root, count));
+	}
+
+	// the elements following the first 'count' ones
+	Rope<E> drop(int count) {
+		Objects.checkIndex(count, size() + 1);
+		return count == 0 ? this : of(drop(root, count));
+	}
+
+	// the elements of this rope followed by the ones of 'other'
+	Rope<E> concat(Rope<E> other) {
+		if (other.root == null)
+			return this;
+		if (root == null)
+			return other;
+		return new Rope<>(concat(root, other.root));
+	}
+
+	private static <E extends Measured> Node<E> take(Node<E> node, int count) {
+		if (node == null || count == 0)
+			return null;
+		final var left = size(node.left);
+		if (count <= left)
+			return take(node.left, count);
+		return new Node<>(node.left, node, take(node.right, count - left - 1));
+	}
+
+	private static <E extends Measured> Node<E> drop(Node<E> node, int count) {
+		if (node == null || count == 0)
+			return node;
+		final var left = size(node.left);
+		if (count > left)
+			return drop(node.right, count - left - 1);
+		return new Node<>(drop(node.left, count), node, node.right);
+	}
+
+	private static <E extends Measured> Node<E> concat(Node<E> left, Node<E> right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority > right.priority)
+			return new Node<>(left.left, left, concat(left.right, right));
+		return new Node<>(concat(left, right.left), right, right.right);
+	}
+
+	// iterates over the elements in order, in constant amortized time for each element
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<>() {
+			private final ArrayDeque<Node<E>> path = new ArrayDeque<>(); // nodes whose element is still to be visited
+			{
+				pushLeft(root);
+			}
+
+			private void pushLeft(Node<E> node) {
+				for (; node != null; node = node.left)
+					path.push(node);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return !path.isEmpty();
+			}
+
+			@Override
+			public E next() {
+				if (path.isEmpty())
+					throw new NoSuchElementException();
+				final var node = path.pop();
+				pushLeft(node.right);
+				return node.elem;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + size() + " elements)";
+	}
+}
@@ -0,0 +1,443 @@
+package progetto.parser;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static progetto.parser.TokenType.*;
+
+/*
+ * compact representation of the whole token stream of a program, built by a first lexing pass
+ *
+ * tokens are stored in parallel arrays indexed by the position of the token in the stream:
+ * - 'kinds': ordinal of the token type
+ * - 'offsets': offset of the token from the start of the source
+ * - 'lines': line number of the token
+ * - 'values': value of NUM tokens, 1/0 for BOOL tokens, index in the identifier table for IDENT tokens
+ * identifiers are interned in a table, so that each distinct name is stored once
+ *
+ * the last token is always EOF, unless lexing failed; in that case the error is recorded and thrown only
+ * when a cursor reaches its position, so that errors are reported in the same order as with a tokenizer
+ * used on the fly by the parser
+ *
+ * the buffer is immutable once built and can be read by any number of independent cursors
+ *
+ * large sources can be lexed in parallel: since no token spans more than one line, the source is split into
+ * chunks at line boundaries, the chunks are lexed independently and their buffers are concatenated
+ */
+
+public class TokenBuffer {
+
+	private static final TokenType[] TYPES = TokenType.values();
+	private static final int INIT_CAPACITY = 1024;
+
+	private int[] kinds = new int[INIT_CAPACITY];
+	private int[] offsets = new int[INIT_CAPACITY];
+	private int[] lines = new int[INIT_CAPACITY];
+	private int[] values = new int[INIT_CAPACITY];
+	private int size; // number of tokens
+
+	private final ArrayList<String> names = new ArrayList<>(); // identifier table
+	private final HashMap<String, Integer> ids = new HashMap<>(); // maps identifiers to their index in 'names'
+
+	private String eofLexeme; // lexeme of the EOF token, the last skipped lexeme if any, see 'MyLangScanner'
+	private Exception error; // lexical error raised after the last token, if any
+	private int errorLine; // line number of the lexical error, if any
+
+	private static final int MIN_CHUNK_SIZE = 1 << 16; // minimum number of characters lexed by a parallel task
+
+	TokenBuffer() {
+	}
+
+	/*
+	 * builds the token buffer by consuming all tokens from 'scanner', up to EOF or to the first lexical error
+	 */
+	public static TokenBuffer lex(MyLangScanner scanner) {
+		final var tokens = new TokenBuffer();
+		try {
+			TokenType type;
+			do {
+				type = scanner.next();
+				tokens.add(scanner, type);
+			} while (type != EOF);
+		} catch (TokenizerException | RuntimeException e) { // NUM literals out of range throw runtime exceptions
+			tokens.error = e;
+			tokens.errorLine = scanner.getLineNumber();
+		}
+		tokens.trim();
+		return tokens;
+	}
+
+	/*
+	 * builds the token buffer of the whole source in 'text' by lexing chunks of at least 'MIN_CHUNK_SIZE' characters
+	 * in parallel on 'pool'; the result is the same as 'lex(new MyLangScanner(text))'
+	 */
+	public static TokenBuffer lexParallel(CharBuffer text, ForkJoinPool pool) {
+		final var chunkSize = Math.max(MIN_CHUNK_SIZE, text.remaining() / (4 * pool.getParallelism()));
+		return lexParallel(text, pool, chunkSize);
+	}
+
+	// as above, with chunks of at least 'chunkSize' characters
+	public static TokenBuffer lexParallel(CharBuffer text, ForkJoinPool pool, int chunkSize) {
+		if (!text.hasArray()) {
+			final var chars = new char[text.remaining()];
+			text.duplicate().get(chars);
+			text = CharBuffer.wrap(chars);
+		}
+		final var buf = text.array();
+		final var start = text.arrayOffset() + text.position();
+		final var ends = splitAtLines(buf, start, text.arrayOffset() + text.limit(), chunkSize);
+		final var chunks = ends.length;
+		return pool.submit(() -> {
+			// first line of each chunk, from the number of line terminators in the previous ones
+			final var firstLines = IntStream.range(0, chunks).parallel()
+					.map(i -> countTerminators(buf, i == 0 ? start : ends[i - 1], ends[i])).toArray();
+			for (int i = 0, lines = 1; i < chunks; i++) {
+				final var terminators = firstLines[i];
+				firstLines[i] = lines;
+				lines += terminators;
+			}
+			final var buffers = IntStream.range(0, chunks).parallel().mapToObj(i -> {
+				final var from = i == 0 ? start : ends[i - 1];
+				return lex(new MyLangScanner(CharBuffer.wrap(buf, from, ends[i] - from), firstLines[i]));
+			}).toArray(TokenBuffer[]::new);
+			final var offsets = IntStream.range(0, chunks).map(i -> (i == 0 ? start : ends[i - 1]) - start).toArray();
+			return concat(buffers, offsets);
+		}).join();
+	}
+
+	/*
+	 * splits 'buf' between 'start' and 'end' in chunks of at least 'chunkSize' characters, each one ending
+	 * after a line terminator, except for the last one; returns the end offsets of the chunks
+	 */
+	private static int[] splitAtLines(char[] buf, int start, int end, int chunkSize) {
+		final var ends = new ArrayList<Integer>();
+		var from = start;
+		while (end - from > chunkSize) {
+			var at = from + chunkSize;
+			while (at < end && buf[at] != '\n' && buf[at] != '\r')
+				at++;
+			if (at < end - 1 && buf[at] == '\r' && buf[at + 1] == '\n') // '\r\n' is a single terminator
+				at++;
+			if (at >= end - 1)
+				break;
+			from = at + 1;
+			ends.add(from);
+		}
+		ends.add(end);
+		return ends.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	// number of line terminators '\n', '\r' and '\r\n' in 'buf' between 'from' and 'to'
+	static int countTerminators(char[] buf, int from, int to) {
+		var count = 0;
+		for (var i = from; i < to; i++)
+			if (buf[i] == '\r' || buf[i] == '\n' && (i == from || buf[i - 1] != '\r'))
+				count++;
+		return count;
+	}
+
+	/*
+	 * concatenates the buffers of consecutive chunks of the same source; 'chunkOffsets' contains the offsets
+	 * of the chunks in the source; the tokens following the first lexical error are dropped
+	 */
+	private static TokenBuffer concat(TokenBuffer[] buffers, int[] chunkOffsets) {
+		final var result = new TokenBuffer();
+		final var last = lastChunk(buffers);
+		result.error = buffers[last].error;
+		result.errorLine = buffers[last].errorLine;
+		// starting positions of the chunks in the result, the EOF tokens of the non last chunks are dropped
+		final var starts = new int[last + 1];
+		for (var i = 0; i < last; i++)
+			starts[i + 1] = starts[i] + buffers[i].size - 1;
+		result.size = starts[last] + buffers[last].size;
+		// the identifiers of each chunk are mapped to the merged identifier table
+		final var idMaps = new int[last + 1][];
+		for (var i = 0; i <= last; i++) {
+			final var names = buffers[i].names;
+			idMaps[i] = new int[names.size()];
+			for (var id = 0; id < idMaps[i].length; id++)
+				idMaps[i][id] = result.intern(names.get(id));
+		}
+		result.kinds = new int[result.size];
+		result.offsets = new int[result.size];
+		result.lines = new int[result.size];
+		result.values = new int[result.size];
+		final var identOrdinal = IDENT.ordinal();
+		IntStream.rangeClosed(0, last).parallel().forEach(i -> {
+			final var chunk = buffers[i];
+			final var length = i < last ? chunk.size - 1 : chunk.size;
+			final var at = starts[i];
+			final var offset = chunkOffsets[i];
+			final var idMap = idMaps[i];
+			System.arraycopy(chunk.kinds, 0, result.kinds, at, length);
+			System.arraycopy(chunk.lines, 0, result.lines, at, length);
+			for (var k = 0; k < length; k++) {
+				result.offsets[at + k] = chunk.offsets[k] + offset;
+				result.values[at + k] = chunk.kinds[k] == identOrdinal ? idMap[chunk.values[k]] : chunk.values[k];
+			}
+		});
+		/*
+		 * the lexeme of EOF is the last skipped lexeme on the last non empty line, if any, see 'MyLangScanner';
+		 * chunks with no lexemes at all, just line terminators, do not affect it
+		 */
+		for (var i = last; i >= 0 && result.error == null && result.eofLexeme == null; i--) {
+			result.eofLexeme = buffers[i].eofLexeme;
+			if (buffers[i].size > 1)
+				break;
+		}
+		return result;
+	}
+
+	// index of the first chunk with a lexical error, if any, of the last chunk otherwise
+	private static int lastChunk(TokenBuffer[] buffers) {
+		for (var i = 0; i < buffers.length; i++)
+			if (buffers[i].error != null) // lexing stops at the first error
+				return i;
+		return buffers.length - 1;
+	}
+
+	// position of the first token with offset greater than or equal to 'offset', the size if there is none
+	public int tokenAt(int offset) {
+		var low = 0;
+		var high = size;
+		while (low < high) {
+			final var mid = (low + high) >>> 1;
+			if (offsets[mid] < offset)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	// true if lexing stopped because of a lexical error
+	public boolean hasError() {
+		return error != null;
+	}
+
+	// lexeme of the EOF token, if any
+	String eofLexeme() {
+		return eofLexeme;
+	}
+
+	private void add(MyLangScanner scanner, TokenType type) {
+		grow();
+		kinds[size] = type.ordinal();
+		offsets[size] = scanner.tokenOffset();
+		lines[size] = scanner.getLineNumber();
+		values[size] = switch (type) {
+		case NUM -> scanner.intValue();
+		case BOOL -> scanner.boolValue() ? 1 : 0;
+		case IDENT -> intern(scanner.tokenString());
+		case EOF -> {
+			eofLexeme = scanner.tokenString();
+			yield 0;
+		}
+		default -> 0;
+		};
+		size++;
+	}
+
+	/*
+	 * appends a token to a buffer built from another representation of the stream, see 'TokenRope.toBuffer()';
+	 * 'lexeme' is the lexeme of IDENT and EOF tokens, it is ignored for the other types
+	 */
+	void append(TokenType type, int offset, int line, int value, String lexeme) {
+		grow();
+		kinds[size] = type.ordinal();
+		offsets[size] = offset;
+		lines[size] = line;
+		values[size] = type == IDENT ? intern(lexeme) : value;
+		if (type == EOF)
+			eofLexeme = lexeme;
+		size++;
+	}
+
+	// ends a buffer built by 'append()' with the lexical error 'error', found on line 'line'
+	void fail(Exception error, int line) {
+		this.error = error;
+		errorLine = line;
+	}
+
+	private void grow() {
+		if (size == kinds.length) {
+			final var capacity = 2 * size;
+			kinds = Arrays.copyOf(kinds, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	// returns the index of 'name' in the identifier table, adding it if needed
+	private int intern(String name) {
+		final var id = ids.get(name);
+		if (id != null)
+			return id;
+		names.add(name);
+		ids.put(name, names.size() - 1);
+		return names.size() - 1;
+	}
+
+	private void trim() {
+		kinds = Arrays.copyOf(kinds, size);
+		offsets = Arrays.copyOf(offsets, size);
+		lines = Arrays.copyOf(lines, size);
+		values = Arrays.copyOf(values, size);
+		names.trimToSize();
+	}
+
+	// number of tokens, EOF included
+	public int size() {
+		return size;
+	}
+
+	public TokenType type(int index) {
+		return TYPES[kinds[index]];
+	}
+
+	public int offset(int index) {
+		return offsets[index];
+	}
+
+	public int line(int index) {
+		return lines[index];
+	}
+
+	public int value(int index) {
+		return values[index];
+	}
+
+	// number of distinct identifiers
+	public int nameCount() {
+		return names.size();
+	}
+
+	// identifier with index 'id' in the identifier table
+	public String name(int id) {
+		return names.get(id);
+	}
+
+	// lexeme of the token at position 'index'
+	public String lexeme(int index) {
+		final var type = type(index);
+		return switch (type) {
+		case IDENT -> names.get(values[index]);
+		case NUM -> Integer.toString(values[index]);
+		case BOOL -> values[index] != 0 ? "true" : "false";
+		case EOF -> eofLexeme;
+		default -> MyLangScanner.fixedLexeme(type);
+		};
+	}
+
+	// returns a new tokenizer reading the tokens of the buffer from the first one
+	public Cursor tokenizer() {
+		return new Cursor();
+	}
+
+	/*
+	 * tokenizer reading the tokens of the buffer; besides the operations of 'Tokenizer', it allows
+	 * arbitrary lookahead
+	 */
+	public class Cursor implements Tokenizer {
+
+		// position of the current token, -1 if no token has been read yet, 'size' if the lexical error has been reached
+		private int index = -1;
+
+		private void checkLegalState() {
+			if (index < 0 || index == size)
+				throw new IllegalStateException("No token was recognized");
+		}
+
+		private void checkLegalState(TokenType tokenType) {
+			if (index < 0 || index == size || kinds[index] != tokenType.ordinal())
+				throw new IllegalStateException("No token of type " + tokenType + " was recognized");
+		}
+
+		@Override
+		public TokenType next() throws TokenizerException {
+			if (index == size - 1 && error == null) // EOF has been already reached
+				return EOF;
+			if (index < size)
+				index++;
+			if (index == size) {
+				if (error instanceof TokenizerException e)
+					throw e;
+				throw (RuntimeException) error;
+			}
+			return type(index);
+		}
+
+		/*
+		 * type of the token 'k' positions after the current one, EOF if the stream ends before it;
+		 * returns null if a lexical error occurs before it
+		 */
+		public TokenType lookahead(int k) {
+			final var at = index + k;
+			if (at < size)
+				return type(at);
+			return error == null ? EOF : null;
+		}
+
+		// position of the current token in the buffer
+		public int index() {
+			return index;
+		}
+
+		// moves the cursor so that the current token is the one at position 'index'
+		public void seek(int index) {
+			this.index = Objects.checkIndex(index, size);
+		}
+
+		public TokenBuffer buffer() {
+			return TokenBuffer.this;
+		}
+
+		@Override
+		public TokenType tokenType() {
+			checkLegalState();
+			return type(index);
+		}
+
+		@Override
+		public String tokenString() {
+			checkLegalState();
+			return lexeme(index);
+		}
+
+		@Override
+		public int intValue() {
+			checkLegalState(NUM);
+			return values[index];
+		}
+
+		@Override
+		public boolean boolValue() {
+			checkLegalState(BOOL);
+			return values[index] != 0;
+		}
+
+		@Override
+		public int getLineNumber() {
+			if (index < 0)
+				return 0;
+			return index == size ? errorLine : lines[index];
+		}
+
+		@Override
+		public void close() throws IOException { // the buffer does not own any resource
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + size + " tokens, " + names.size() + " identifiers)";
+	}
+
+}
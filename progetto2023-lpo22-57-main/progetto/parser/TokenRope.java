@@ -0,0 +1,518 @@
+package progetto.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import static progetto.parser.TokenType.*;
+
+/*
+ * token stream of a source which is edited repeatedly, see 'IncrementalParser'
+ *
+ * tokens are stored in chunks of at most 'CHUNK_SIZE' tokens, kept in a 'Rope'; a chunk spans the characters from
+ * its first token, or from the start of the source for the first chunk, up to the first token of the following
+ * chunk, or up to the end of the source; as in 'TokenBuffer', the tokens of a chunk are stored in parallel arrays,
+ * but their offsets and lines are relative to the start of the chunk, hence the chunks following an edit are shared,
+ * unchanged, by the edited stream
+ *
+ * lexing does not stop at lexical errors: the erroneous lexeme is stored as an ERROR token and lexing goes on from
+ * the following line, so that the tokens after an error can still be reused by the following edits; the exception
+ * is thrown again, by lexing the line of the error, when a cursor reaches the ERROR token
+ *
+ * after an edit, the source is lexed again from the last token which can depend on the edited characters up to
+ * the first token after the edit which starts where a token of the previous source started, moved by the length
+ * of the edit; since lexing restarted at the start of a lexeme gives the same lexemes, the following tokens
+ * are the same as before
+ */
+
+final class TokenRope {
+
+	static final int ERROR = -1; // kind of the tokens which mark lexical errors
+
+	private static final TokenType[] TYPES = TokenType.values();
+	static final int CHUNK_SIZE = 256; // maximum number of tokens in a chunk
+	static final int WINDOW = 4096; // number of characters lexed by the same scanner, unless lexemes are longer
+
+	// chunk of consecutive tokens, immutable
+	private static final class Chunk implements Rope.Measured {
+		private final int[] kinds; // ordinals of the token types, ERROR for lexical errors
+		private final int[] offsets; // offsets of the tokens from the start of the chunk
+		private final int[] lines; // number of line terminators between the start of the chunk and each token
+		private final int[] values; // as in 'TokenBuffer'
+		private final int chars; // number of characters spanned by the chunk
+		private final int terminators; // number of line terminators in the chunk
+
+		private Chunk(int[] kinds, int[] offsets, int[] lines, int[] values, int chars, int terminators) {
+			this.kinds = kinds;
+			this.offsets = offsets;
+			this.lines = lines;
+			this.values = values;
+			this.chars = chars;
+			this.terminators = terminators;
+		}
+
+		@Override
+		public int tokens() {
+			return kinds.length;
+		}
+
+		@Override
+		public int chars() {
+			return chars;
+		}
+
+		@Override
+		public int lines() {
+			return terminators;
+		}
+	}
+
+	// growable list of tokens with offsets from the start of the source, before they are split in chunks
+	private static final class Tokens {
+		private int[] kinds = new int[64];
+		private int[] offsets = new int[64];
+		private int[] values = new int[64];
+		private int size;
+
+		private void add(int kind, int offset, int value) {
+			if (size == kinds.length) {
+				kinds = Arrays.copyOf(kinds, 2 * size);
+				offsets = Arrays.copyOf(offsets, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			kinds[size] = kind;
+			offsets[size] = offset;
+			values[size++] = value;
+		}
+	}
+
+	/*
+	 * change of the stream made by an edit: the tokens from position 'start' (included) to 'end' (excluded) of
+	 * the previous stream have been replaced by 'end - start + delta' tokens, the other ones are the same
+	 */
+	record Change(int start, int end, int delta) {
+	}
+
+	private final GapBuffer text;
+	private Rope<Chunk> chunks;
+	private final ArrayList<String> names = new ArrayList<>(); // identifier table, it only grows
+	private final HashMap<String, Integer> ids = new HashMap<>(); // maps identifiers to their index in 'names'
+	private int resync; // position in the previous stream of the first token kept by the last call to 'lex()'
+
+	TokenRope(CharSequence source) {
+		text = new GapBuffer(source);
+		chunks = Rope.empty();
+		final var tokens = lex(0, 0, 0, new Cursor(), 0);
+		chunks = Rope.of(chunk(tokens, 0, text.length()));
+	}
+
+	// the current source
+	CharSequence text() {
+		return text;
+	}
+
+	// number of tokens, EOF excluded
+	int count() {
+		return chunks.tokens();
+	}
+
+	/*
+	 * replaces 'removed' characters starting at 'offset' with 'inserted' and updates the tokens;
+	 * returns the change of the tokens, null if they have not changed
+	 */
+	Change edit(int offset, int removed, CharSequence inserted) {
+		Objects.checkFromIndexSize(offset, removed, text.length());
+		final var old = new Cursor(); // reads the stream before the edit
+		final var count = old.count;
+		/*
+		 * the scanner examines at most two characters after a lexeme, hence the tokens before the last one which
+		 * starts before 'offset - 1' do not depend on the edited characters; lexing restarts from that token
+		 */
+		final var before = tokenAt(offset - 1) - 1; // the last token starting before 'offset - 1', if any
+		final var first = Math.max(0, before);
+		if (before >= 0)
+			old.seek(before);
+		final var from = before < 0 ? 0 : old.offset();
+		final var next = tokenAt(offset + removed); // the first token which can be kept
+		text.replace(offset, removed, inserted);
+		final var delta = inserted.length() - removed;
+		final var added = lex(from, offset + inserted.length(), delta, old, next);
+		final var last = resync;
+		// chunks spanning the tokens from 'first' to 'last', the characters before them are not changed by the edit
+		final var firstChunk = Math.min(chunks.indexOfChar(from), chunks.size() - 1);
+		final var lastChunk = last < count ? chunks.indexOfToken(last) : chunks.size() - 1;
+		final var start = chunks.charsBefore(firstChunk);
+		final var end = chunks.charsBefore(lastChunk + 1) + delta;
+		final var tokens = new Tokens();
+		for (var i = chunks.tokensBefore(firstChunk); i < first; i++) {
+			old.seek(i);
+			tokens.add(old.kind(), old.offset(), old.value());
+		}
+		for (var i = 0; i < added.size; i++)
+			tokens.add(added.kinds[i], added.offsets[i], added.values[i]);
+		for (int i = last, to = chunks.tokensBefore(lastChunk + 1); i < to; i++) {
+			old.seek(i);
+			tokens.add(old.kind(), old.offset() + delta, old.value());
+		}
+		final var change = compare(old, first, last, added);
+		var region = Rope.of(chunk(tokens, start, end));
+		if (tokens.size == 0 && start == end && chunks.size() > lastChunk - firstChunk + 1) // no empty chunks
+			region = Rope.empty();
+		chunks = chunks.take(firstChunk).concat(region).concat(chunks.drop(lastChunk + 1));
+		return change;
+	}
+
+	/*
+	 * lexes the source from offset 'from', the start of a lexeme, up to the first token which starts at or after
+	 * 'editEnd' and where a token of the previous stream started, moved by 'delta'; the previous stream is read by
+	 * 'old' starting from position 'next'; the position of that token in the previous stream, or the number of its
+	 * tokens if the source is lexed up to its end, is stored in 'resync'
+	 *
+	 * the source is lexed in windows of 'WINDOW' characters: lexemes which could go on after the end of a window,
+	 * or whose recognition depends on the characters following it, are lexed again at the start of the next window
+	 */
+	private Tokens lex(int from, int editEnd, int delta, Cursor old, int next) {
+		final var tokens = new Tokens();
+		final var length = text.length();
+		var pos = from;
+		var window = WINDOW;
+		while (true) {
+			final var limit = (int) Math.min(length, (long) pos + window);
+			final var scanner = new MyLangScanner(text.window(pos, limit));
+			var restart = pos; // start of the first lexeme which has not been lexed
+			try {
+				for (var type = scanner.next(); type != EOF; type = scanner.next()) {
+					final var end = pos + scanner.tokenEndOffset();
+					if (limit < length && end + 2 > limit)
+						break;
+					final var start = pos + scanner.tokenOffset();
+					if (start >= editEnd && (next = skipTo(old, next, start - delta)) < old.count
+							&& old.offset() == start - delta) {
+						resync = next;
+						return tokens;
+					}
+					tokens.add(type.ordinal(), start, value(scanner, type));
+					restart = end;
+				}
+				if (limit == length) {
+					resync = old.count;
+					return tokens;
+				}
+			} catch (TokenizerException | RuntimeException e) { // NUM literals out of range throw runtime exceptions
+				final var at = pos + scanner.errorOffset();
+				if (limit == length || examined(at) + 2 <= limit) {
+					if (at >= editEnd && (next = skipTo(old, next, at - delta)) < old.count
+							&& old.offset() == at - delta) {
+						resync = next;
+						return tokens;
+					}
+					tokens.add(ERROR, at, 0);
+					restart = text.nextLineStart(at);
+				}
+			}
+			window = restart == pos ? 2 * window : WINDOW;
+			pos = restart;
+		}
+	}
+
+	/*
+	 * moves 'old' to the first token from position 'next' on which starts at or after 'offset', and returns its
+	 * position, the number of tokens if there is none
+	 */
+	private static int skipTo(Cursor old, int next, int offset) {
+		for (; next < old.count; next++) {
+			old.seek(next);
+			if (old.offset() >= offset)
+				break;
+		}
+		return next;
+	}
+
+	// last character examined by the scanner to recognize the lexical error at offset 'at'
+	private int examined(int at) {
+		final var length = text.length();
+		if (text.charAt(at) < '0' || text.charAt(at) > '9') // the error depends at most on the following character
+			return at;
+		while (at < length && text.charAt(at) >= '0' && text.charAt(at) <= '9') // NUM literal out of range
+			at++;
+		return at;
+	}
+
+	// value of the token recognized by 'scanner', as in 'TokenBuffer'
+	private int value(MyLangScanner scanner, TokenType type) {
+		return switch (type) {
+		case NUM -> scanner.intValue();
+		case BOOL -> scanner.boolValue() ? 1 : 0;
+		case IDENT -> intern(scanner.tokenString());
+		default -> 0;
+		};
+	}
+
+	// returns the index of 'name' in the identifier table, adding it if needed
+	private int intern(String name) {
+		final var id = ids.get(name);
+		if (id != null)
+			return id;
+		names.add(name);
+		ids.put(name, names.size() - 1);
+		return names.size() - 1;
+	}
+
+	/*
+	 * splits 'tokens', which span the characters from 'start' to 'end' of the source, in chunks of at most
+	 * 'CHUNK_SIZE' tokens and about the same size
+	 */
+	private List<Chunk> chunk(Tokens tokens, int start, int end) {
+		final var size = tokens.size;
+		final var pieces = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		final var result = new ArrayList<Chunk>(pieces);
+		var at = start; // the line terminators before 'at' have been counted
+		for (var piece = 0; piece < pieces; piece++) {
+			final var low = (int) ((long) piece * size / pieces);
+			final var high = (int) ((long) (piece + 1) * size / pieces);
+			final var chunkStart = at;
+			final var chunkEnd = piece == pieces - 1 ? end : tokens.offsets[high];
+			final var offsets = new int[high - low];
+			final var lines = new int[high - low];
+			var terminators = 0;
+			for (var i = low; i < high; i++) {
+				terminators += text.countTerminators(at, tokens.offsets[i]);
+				at = tokens.offsets[i];
+				offsets[i - low] = at - chunkStart;
+				lines[i - low] = terminators;
+			}
+			terminators += text.countTerminators(at, chunkEnd);
+			at = chunkEnd;
+			result.add(new Chunk(Arrays.copyOfRange(tokens.kinds, low, high), offsets, lines,
+					Arrays.copyOfRange(tokens.values, low, high), chunkEnd - chunkStart, terminators));
+		}
+		return result;
+	}
+
+	/*
+	 * change of the stream where the tokens of 'old' from position 'first' (included) to 'last' (excluded)
+	 * have been replaced by 'added'; tokens are compared by their kind and value, ERROR tokens are always changed,
+	 * since the message of their exception can change
+	 */
+	private static Change compare(Cursor old, int first, int last, Tokens added) {
+		final var common = Math.min(last - first, added.size);
+		var prefix = 0;
+		while (prefix < common && same(old, first + prefix, added, prefix))
+			prefix++;
+		var suffix = 0;
+		while (suffix < common - prefix && same(old, last - 1 - suffix, added, added.size - 1 - suffix))
+			suffix++;
+		if (last - first == added.size && prefix + suffix == added.size)
+			return null;
+		return new Change(first + prefix, last - suffix, added.size - (last - first));
+	}
+
+	private static boolean same(Cursor old, int index, Tokens added, int i) {
+		old.seek(index);
+		return old.kind() != ERROR && old.kind() == added.kinds[i] && old.value() == added.values[i];
+	}
+
+	// position of the first token starting at or after 'offset', the number of tokens if there is none
+	private int tokenAt(int offset) {
+		if (chunks.isEmpty())
+			return 0;
+		final var index = Math.min(chunks.indexOfChar(Math.max(0, offset)), chunks.size() - 1);
+		final var chunk = chunks.get(index);
+		final var relative = offset - chunks.charsBefore(index);
+		var low = 0;
+		var high = chunk.kinds.length;
+		while (low < high) {
+			final var mid = (low + high) >>> 1;
+			if (chunk.offsets[mid] < relative)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return chunks.tokensBefore(index) + low;
+	}
+
+	// line number of EOF, as for 'MyLangScanner'
+	private int eofLine() {
+		final var length = text.length();
+		final var last = length == 0 ? '\n' : text.charAt(length - 1);
+		return chunks.lines() + (last != '\n' && last != '\r' ? 1 : 0);
+	}
+
+	// lexeme of EOF, the last skipped lexeme on the last non empty line, if any, see 'MyLangScanner'
+	private String eofLexeme() {
+		var end = text.length();
+		while (end > 0 && (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r'))
+			end--;
+		return TokenBuffer.lex(new MyLangScanner(text.window(text.lineStart(end), end))).eofLexeme();
+	}
+
+	// returns a new tokenizer reading the current stream from the first token
+	Cursor tokenizer() {
+		return new Cursor();
+	}
+
+	/*
+	 * copies the current stream in a token buffer, up to the first lexical error, as 'TokenBuffer.lex()'
+	 * would build it from the current source
+	 */
+	TokenBuffer toBuffer() {
+		final var buffer = new TokenBuffer();
+		final var cursor = new Cursor();
+		for (var index = 0; index < cursor.count; index++) {
+			cursor.seek(index);
+			if (cursor.kind() == ERROR) {
+				try {
+					cursor.throwError();
+				} catch (TokenizerException | RuntimeException e) {
+					buffer.fail(e, cursor.getLineNumber());
+				}
+				return buffer;
+			}
+			final var type = TYPES[cursor.kind()];
+			buffer.append(type, cursor.offset(), cursor.getLineNumber(), cursor.value(),
+					type == IDENT ? names.get(cursor.value()) : null);
+		}
+		buffer.append(EOF, text.length(), eofLine(), 0, eofLexeme());
+		return buffer;
+	}
+
+	/*
+	 * tokenizer reading the stream as it was when the cursor was created; besides the operations of 'Tokenizer',
+	 * it allows to move to any position; lexical errors are thrown as by 'MyLangScanner', hence the cursor can only
+	 * reach them before the source is edited again
+	 */
+	final class Cursor implements Tokenizer {
+		private final Rope<Chunk> chunks = TokenRope.this.chunks;
+		private final int count = chunks.tokens();
+
+		private int index = -1; // position of the current token, -1 if none has been read yet, 'count' for EOF
+		private Chunk chunk; // chunk of the current token
+		private int chunkIndex; // index of 'chunk' in 'chunks'
+		private int chunkFirst; // position of the first token of 'chunk'
+		private int chunkOffset; // offset of the start of 'chunk'
+		private int chunkLines; // line terminators before 'chunk'
+		private int at; // position of the current token in 'chunk'
+
+		// position of the current token
+		int index() {
+			return index;
+		}
+
+		// moves the cursor so that the current token is the one at position 'index', EOF if it is the number of tokens
+		void seek(int index) {
+			this.index = Objects.checkIndex(index, count + 1);
+			if (index == count)
+				return;
+			if (chunk == null || index < chunkFirst || index >= chunkFirst + chunk.kinds.length + CHUNK_SIZE) {
+				chunkIndex = chunks.indexOfToken(index);
+				chunk = chunks.get(chunkIndex);
+				chunkFirst = chunks.tokensBefore(chunkIndex);
+				chunkOffset = chunks.charsBefore(chunkIndex);
+				chunkLines = chunks.linesBefore(chunkIndex);
+			}
+			while (index >= chunkFirst + chunk.kinds.length) { // the token is in one of the following chunks
+				chunkFirst += chunk.kinds.length;
+				chunkOffset += chunk.chars;
+				chunkLines += chunk.terminators;
+				chunk = chunks.get(++chunkIndex);
+			}
+			at = index - chunkFirst;
+		}
+
+		// kind of the current token, not EOF
+		int kind() {
+			return chunk.kinds[at];
+		}
+
+		// offset of the current token, not EOF
+		int offset() {
+			return chunkOffset + chunk.offsets[at];
+		}
+
+		// value of the current token, not EOF
+		int value() {
+			return chunk.values[at];
+		}
+
+		// throws the lexical error of the current token, an ERROR token, found by lexing its line again
+		private void throwError() throws TokenizerException {
+			final var offset = offset();
+			final var scanner = new MyLangScanner(text.window(text.lineStart(offset), text.lineEnd(offset)),
+					getLineNumber());
+			while (scanner.next() != EOF)
+				;
+			throw new IllegalStateException("No lexical error at offset " + offset);
+		}
+
+		private void checkLegalState() {
+			if (index < 0 || index < count && chunk.kinds[at] == ERROR)
+				throw new IllegalStateException("No token was recognized");
+		}
+
+		private void checkLegalState(TokenType tokenType) {
+			if (tokenType() != tokenType)
+				throw new IllegalStateException("No token of type " + tokenType + " was recognized");
+		}
+
+		@Override
+		public TokenType next() throws TokenizerException {
+			if (index == count) // EOF has been already reached
+				return EOF;
+			if (index < 0 || chunk.kinds[at] != ERROR) // the cursor does not go past lexical errors
+				seek(index + 1);
+			if (index < count && chunk.kinds[at] == ERROR)
+				throwError();
+			return tokenType();
+		}
+
+		@Override
+		public TokenType tokenType() {
+			checkLegalState();
+			return index == count ? EOF : TYPES[chunk.kinds[at]];
+		}
+
+		@Override
+		public String tokenString() {
+			final var type = tokenType();
+			return switch (type) {
+			case IDENT -> names.get(chunk.values[at]);
+			case NUM -> Integer.toString(chunk.values[at]);
+			case BOOL -> chunk.values[at] != 0 ? "true" : "false";
+			case EOF -> eofLexeme();
+			default -> MyLangScanner.fixedLexeme(type);
+			};
+		}
+
+		@Override
+		public int intValue() {
+			checkLegalState(NUM);
+			return chunk.values[at];
+		}
+
+		@Override
+		public boolean boolValue() {
+			checkLegalState(BOOL);
+			return chunk.values[at] != 0;
+		}
+
+		@Override
+		public int getLineNumber() {
+			if (index < 0)
+				return 0;
+			return index == count ? eofLine() : 1 + chunkLines + chunk.lines[at];
+		}
+
+		@Override
+		public void close() throws IOException { // the stream does not own any resource
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + count() + " tokens, " + chunks.size() + " chunks, " + names.size()
+				+ " identifiers)";
+	}
+}
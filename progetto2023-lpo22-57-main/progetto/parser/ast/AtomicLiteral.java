@@ -8,6 +8,21 @@ public abstract class AtomicLiteral<T> implements Exp {
 		this.value = n;
 	}
 
+	// structural equality: same kind of literal and equal values
+	@Override
+	public final boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj instanceof AtomicLiteral<?> lit)
+			return lit.getClass() == getClass() && value.equals(lit.value);
+		return false;
+	}
+
+	@Override
+	public final int hashCode() {
+		return 31 * getClass().hashCode() + value.hashCode();
+	}
+
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + "(" + value + ")";
@@ -5,10 +5,27 @@ import static java.util.Objects.requireNonNull;
 public abstract class BinaryOp implements Exp {
 	protected final Exp left;
 	protected final Exp right;
+	private final int hash; // cached, since operands may be large trees
 
 	protected BinaryOp(Exp left, Exp right) {
 		this.left = requireNonNull(left);
 		this.right = requireNonNull(right);
+		hash = 31 * (31 * getClass().hashCode() + left.hashCode()) + right.hashCode();
+	}
+
+	// structural equality: same operator and equal operands
+	@Override
+	public final boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj instanceof BinaryOp op)
+			return op.getClass() == getClass() && hash == op.hash && left.equals(op.left) && right.equals(op.right);
+		return false;
+	}
+
+	@Override
+	public final int hashCode() {
+		return hash;
 	}
 
 	@Override
@@ -1,12 +0,0 @@
-package progetto.parser.ast;
-
-public abstract class EmptySeq<T> {
-
-	protected EmptySeq() {
-	}
-
-	@Override
-	public String toString() {
-		return getClass().getSimpleName();
-	}
-}
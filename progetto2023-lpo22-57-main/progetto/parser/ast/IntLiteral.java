@@ -1,11 +1,19 @@
 package progetto.parser.ast;
 
+import static java.util.Objects.requireNonNull;
+
 import progetto.visitors.Visitor;
+import progetto.visitors.execution.IntValue;
 
-public class IntLiteral extends AtomicLiteral<Integer> {
+// the value of the literal is built once, when the node is created, and shared by all its evaluations
+public class IntLiteral extends AtomicLiteral<IntValue> {
 
 	public IntLiteral(int n) {
-		super(n);
+		super(IntValue.of(n));
+	}
+
+	public IntLiteral(IntValue value) {
+		super(requireNonNull(value));
 	}
 	
 	@Override
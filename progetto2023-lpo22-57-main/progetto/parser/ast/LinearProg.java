@@ -0,0 +1,490 @@
+package progetto.parser.ast;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+import progetto.visitors.Visitor;
+import progetto.visitors.execution.IntValue;
+
+/*
+ * program stored as a tree linearized in postorder in three parallel arrays, instead of one object per node
+ *
+ * each node is an index: 'op(node)' is its opcode, 'size(node)' the number of nodes of its subtree and
+ * 'operand(node)' its operand, that is, the value of boolean literals, the number of statements of sequences, the
+ * presence of the else branch of 'if' statements, for the nodes with a variable, its index in the pool of variables
+ * 'name(node)' and, for integer literals, the index of their value in the pool of values 'value(node)'
+ *
+ * the children of a node precede it, the last one is 'node - 1' and each one is preceded by the previous one,
+ * see 'previous()'; the subtree of a node is the range from 'first(node)' to 'node', hence expressions can also be
+ * evaluated by a single scan with a stack of values; since the right operand of '&&' must not be evaluated if the
+ * left one is false, the AND nodes are also listed by the position of their left operand, see 'andFrom()'
+ *
+ * the program is typechecked and executed by 'LinearTypecheck' and 'LinearExecute', which walk the arrays by
+ * node index; it can also be visited by any 'Visitor', through views of its nodes which are built during the
+ * visit and not kept, so that the program takes no more memory after being visited
+ *
+ * the encoding saves memory, not time: a program of 150k statements takes 2 MB instead of 43 MB, but is checked
+ * and executed about 1.8 times slower than the tree, since each node is dispatched by a 'switch' on its opcode,
+ * while the calls of 'accept' on the tree are specialized by the JIT at each call site
+ */
+
+public class LinearProg implements Prog {
+
+	// opcodes
+	public static final int MY_LANG_PROG = 0;
+	public static final int STMT_LIST = 1;
+	public static final int ASSIGN_STMT = 2;
+	public static final int VAR_STMT = 3;
+	public static final int PRINT_STMT = 4;
+	public static final int IF_STMT = 5;
+	public static final int FOREACH = 6;
+	public static final int BLOCK = 7;
+	public static final int ADD = 8;
+	public static final int MUL = 9;
+	public static final int AND = 10;
+	public static final int EQ = 11;
+	public static final int PAIR_LIT = 12;
+	public static final int VECTOR = 13;
+	public static final int SIGN = 14;
+	public static final int NOT = 15;
+	public static final int FST = 16;
+	public static final int SND = 17;
+	public static final int INT_LITERAL = 18;
+	public static final int BOOL_LITERAL = 19;
+	public static final int VARIABLE = 20;
+
+	private final byte[] ops;
+	private final int[] sizes;
+	private final int[] operands;
+	private final Variable[] names; // pool of variables
+	private final IntValue[] values; // pool of the values of integer literals, built once
+	private final int[] ands; // the AND nodes, by increasing position of their left operands
+	private final int[] andLefts; // the left operands of the nodes in 'ands'
+
+	private LinearProg(byte[] ops, int[] sizes, int[] operands, Variable[] names, IntValue[] values, int[] ands,
+			int[] andLefts) {
+		this.ops = ops;
+		this.sizes = sizes;
+		this.operands = operands;
+		this.names = names;
+		this.values = values;
+		this.ands = ands;
+		this.andLefts = andLefts;
+	}
+
+	// returns the linearization of 'prog'
+	public static LinearProg of(Prog prog) {
+		if (prog instanceof LinearProg linear)
+			return linear;
+		var linearizer = new Linearizer();
+		prog.accept(linearizer);
+		return linearizer.build();
+	}
+
+	// number of nodes
+	public int length() {
+		return ops.length;
+	}
+
+	// the root, whose opcode is MY_LANG_PROG
+	public int root() {
+		return ops.length - 1;
+	}
+
+	public int op(int node) {
+		return ops[node];
+	}
+
+	public int size(int node) {
+		return sizes[node];
+	}
+
+	public int operand(int node) {
+		return operands[node];
+	}
+
+	// the variable of a node with opcode ASSIGN_STMT, VAR_STMT, FOREACH or VARIABLE
+	public Variable name(int node) {
+		return names[operands[node]];
+	}
+
+	// the value of a node with opcode INT_LITERAL
+	public IntValue value(int node) {
+		return values[operands[node]];
+	}
+
+	// first node of the subtree of 'node' in postorder
+	public int first(int node) {
+		return node - sizes[node] + 1;
+	}
+
+	// last child of 'node', which must have children
+	public int last(int node) {
+		return node - 1;
+	}
+
+	// the child of the same parent preceding 'node', which must not be the first one
+	public int previous(int node) {
+		return node - sizes[node];
+	}
+
+	// rank of the first AND node whose left operand is at or after 'node', 'andCount()' if there is none
+	public int andFrom(int node) {
+		var low = 0;
+		var high = andLefts.length;
+		while (low < high) {
+			final var mid = (low + high) >>> 1;
+			if (andLefts[mid] < node)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	// number of AND nodes
+	public int andCount() {
+		return ands.length;
+	}
+
+	// the AND node of rank 'rank', in the order of the positions of their left operands
+	public int and(int rank) {
+		return ands[rank];
+	}
+
+	// the left operand of the AND node of rank 'rank'
+	public int andLeft(int rank) {
+		return andLefts[rank];
+	}
+
+	// the children of 'node', in order
+	public int[] children(int node) {
+		var count = 0;
+		for (var child = node - 1; child > node - sizes[node]; child -= sizes[child])
+			count++;
+		var children = new int[count];
+		for (int child = node - 1, i = count - 1; i >= 0; child -= sizes[child], i--)
+			children[i] = child;
+		return children;
+	}
+
+	@Override
+	public <T> T accept(Visitor<T> visitor) {
+		return accept(root(), visitor);
+	}
+
+	/*
+	 * visits the subtree of 'node' with 'visitor', as the corresponding tree node would do; statements and
+	 * expressions are visited by separate methods, small enough to be inlined by the JIT compiler
+	 */
+	public <T> T accept(int node, Visitor<T> visitor) {
+		return ops[node] < ADD ? acceptStmt(node, visitor) : acceptExp(node, visitor);
+	}
+
+	private <T> T acceptStmt(int node, Visitor<T> visitor) {
+		final var last = node - 1;
+		return switch (ops[node]) {
+		case MY_LANG_PROG -> visitor.visitMyLangProg(new Node(last));
+		case STMT_LIST -> visitor.visitStmtList(new Stmts(node));
+		case ASSIGN_STMT -> visitor.visitAssignStmt(name(node), new Node(last));
+		case VAR_STMT -> visitor.visitVarStmt(name(node), new Node(last));
+		case PRINT_STMT -> visitor.visitPrintStmt(new Node(last));
+		case IF_STMT -> {
+			final var thenBlock = operands[node] != 0 ? previous(last) : last;
+			final var elseBlock = operands[node] != 0 ? block(last) : null;
+			yield visitor.visitIfStmt(new Node(previous(thenBlock)), block(thenBlock), elseBlock);
+		}
+		case FOREACH -> visitor.visitForeach(name(node), new Node(previous(last)), block(last));
+		case BLOCK -> visitor.visitBlock(new Node(last));
+		default -> throw new AssertionError("Fatal error: invalid opcode " + ops[node]);
+		};
+	}
+
+	private <T> T acceptExp(int node, Visitor<T> visitor) {
+		return switch (ops[node]) {
+		case SIGN, NOT, FST, SND -> acceptUnOp(node, visitor);
+		case INT_LITERAL -> visitor.visitIntLiteral(value(node));
+		case BOOL_LITERAL -> visitor.visitBoolLiteral(operands[node] != 0);
+		case VARIABLE -> visitor.visitVariable(name(node));
+		default -> acceptBinOp(node, visitor);
+		};
+	}
+
+	private <T> T acceptBinOp(int node, Visitor<T> visitor) {
+		final var right = new Node(node - 1);
+		final var left = new Node(previous(node - 1));
+		return switch (ops[node]) {
+		case ADD -> visitor.visitAdd(left, right);
+		case MUL -> visitor.visitMul(left, right);
+		case AND -> visitor.visitAnd(left, right);
+		case EQ -> visitor.visitEq(left, right);
+		case PAIR_LIT -> visitor.visitPairLit(left, right);
+		case VECTOR -> visitor.visitVector(left, right);
+		default -> throw new AssertionError("Fatal error: invalid opcode " + ops[node]);
+		};
+	}
+
+	private <T> T acceptUnOp(int node, Visitor<T> visitor) {
+		final var exp = new Node(node - 1);
+		return switch (ops[node]) {
+		case SIGN -> visitor.visitSign(exp);
+		case NOT -> visitor.visitNot(exp);
+		case FST -> visitor.visitFst(exp);
+		case SND -> visitor.visitSnd(exp);
+		default -> throw new AssertionError("Fatal error: invalid opcode " + ops[node]);
+		};
+	}
+
+	private Block block(int node) {
+		return new Block(new Node(node - 1));
+	}
+
+	// view of a node as a tree node
+	private final class Node implements Exp, Stmt, StmtSeq {
+		private final int node;
+
+		Node(int node) {
+			this.node = node;
+		}
+
+		@Override
+		public <T> T accept(Visitor<T> visitor) {
+			return LinearProg.this.accept(node, visitor);
+		}
+
+		@Override
+		public String toString() {
+			return "Node(" + node + ")";
+		}
+	}
+
+	// view of the statements of a STMT_LIST node
+	private final class Stmts extends AbstractList<Stmt> implements RandomAccess {
+		private final int[] children;
+
+		Stmts(int node) {
+			children = children(node);
+		}
+
+		@Override
+		public Stmt get(int index) {
+			return new Node(children[index]);
+		}
+
+		@Override
+		public int size() {
+			return children.length;
+		}
+	}
+
+	// builds the arrays by visiting a tree in postorder
+	private static class Linearizer implements Visitor<Void> {
+		private byte[] ops = new byte[256];
+		private int[] sizes = new int[256];
+		private int[] operands = new int[256];
+		private int length;
+		private int[] ands = new int[16];
+		private int[] andLefts = new int[16];
+		private int andCount;
+		private final HashMap<Variable, Integer> indexes = new HashMap<>();
+		private final List<Variable> names = new ArrayList<>();
+		private final HashMap<IntValue, Integer> valueIndexes = new HashMap<>();
+		private final List<IntValue> values = new ArrayList<>();
+
+		LinearProg build() {
+			return new LinearProg(Arrays.copyOf(ops, length), Arrays.copyOf(sizes, length),
+					Arrays.copyOf(operands, length), names.toArray(new Variable[0]), values.toArray(new IntValue[0]),
+					Arrays.copyOf(ands, andCount), Arrays.copyOf(andLefts, andCount));
+		}
+
+		// adds a node whose subtree starts at 'first'
+		private void emit(int op, int first, int operand) {
+			if (length == ops.length) {
+				ops = Arrays.copyOf(ops, 2 * length);
+				sizes = Arrays.copyOf(sizes, 2 * length);
+				operands = Arrays.copyOf(operands, 2 * length);
+			}
+			ops[length] = (byte) op;
+			sizes[length] = length - first + 1;
+			operands[length++] = operand;
+		}
+
+		private int index(Variable var) {
+			var index = indexes.get(var);
+			if (index == null) {
+				index = names.size();
+				indexes.put(var, index);
+				names.add(var);
+			}
+			return index;
+		}
+
+		private int index(IntValue value) {
+			var index = valueIndexes.get(value);
+			if (index == null) {
+				index = values.size();
+				valueIndexes.put(value, index);
+				values.add(value);
+			}
+			return index;
+		}
+
+		private Void emitBinOp(int op, Exp left, Exp right) {
+			final var first = length;
+			left.accept(this);
+			right.accept(this);
+			emit(op, first, 0);
+			return null;
+		}
+
+		private Void emitUnOp(int op, AST child, int operand) {
+			final var first = length;
+			child.accept(this);
+			emit(op, first, operand);
+			return null;
+		}
+
+		@Override
+		public Void visitMyLangProg(StmtSeq stmtSeq) {
+			return emitUnOp(MY_LANG_PROG, stmtSeq, 0);
+		}
+
+		@Override
+		public Void visitStmtList(List<Stmt> stmts) {
+			final var first = length;
+			for (var stmt : stmts)
+				stmt.accept(this);
+			emit(STMT_LIST, first, stmts.size());
+			return null;
+		}
+
+		@Override
+		public Void visitAssignStmt(Variable var, Exp exp) {
+			return emitUnOp(ASSIGN_STMT, exp, index(var));
+		}
+
+		@Override
+		public Void visitVarStmt(Variable var, Exp exp) {
+			return emitUnOp(VAR_STMT, exp, index(var));
+		}
+
+		@Override
+		public Void visitPrintStmt(Exp exp) {
+			return emitUnOp(PRINT_STMT, exp, 0);
+		}
+
+		@Override
+		public Void visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+			final var first = length;
+			exp.accept(this);
+			thenBlock.accept(this);
+			if (elseBlock != null)
+				elseBlock.accept(this);
+			emit(IF_STMT, first, elseBlock != null ? 1 : 0);
+			return null;
+		}
+
+		@Override
+		public Void visitForeach(Variable var, Exp exp, Block thenBlock) {
+			final var first = length;
+			exp.accept(this);
+			thenBlock.accept(this);
+			emit(FOREACH, first, index(var));
+			return null;
+		}
+
+		@Override
+		public Void visitBlock(StmtSeq stmtSeq) {
+			return emitUnOp(BLOCK, stmtSeq, 0);
+		}
+
+		@Override
+		public Void visitAdd(Exp left, Exp right) {
+			return emitBinOp(ADD, left, right);
+		}
+
+		@Override
+		public Void visitMul(Exp left, Exp right) {
+			return emitBinOp(MUL, left, right);
+		}
+
+		// the left operands are emitted in increasing order, hence the AND nodes are listed sorted by them
+		@Override
+		public Void visitAnd(Exp left, Exp right) {
+			final var first = length;
+			left.accept(this);
+			if (andCount == ands.length) {
+				ands = Arrays.copyOf(ands, 2 * andCount);
+				andLefts = Arrays.copyOf(andLefts, 2 * andCount);
+			}
+			final var rank = andCount++;
+			andLefts[rank] = length - 1;
+			right.accept(this);
+			ands[rank] = length;
+			emit(AND, first, 0);
+			return null;
+		}
+
+		@Override
+		public Void visitEq(Exp left, Exp right) {
+			return emitBinOp(EQ, left, right);
+		}
+
+		@Override
+		public Void visitPairLit(Exp left, Exp right) {
+			return emitBinOp(PAIR_LIT, left, right);
+		}
+
+		@Override
+		public Void visitVector(Exp exp1, Exp exp2) {
+			return emitBinOp(VECTOR, exp1, exp2);
+		}
+
+		@Override
+		public Void visitSign(Exp exp) {
+			return emitUnOp(SIGN, exp, 0);
+		}
+
+		@Override
+		public Void visitNot(Exp exp) {
+			return emitUnOp(NOT, exp, 0);
+		}
+
+		@Override
+		public Void visitFst(Exp exp) {
+			return emitUnOp(FST, exp, 0);
+		}
+
+		@Override
+		public Void visitSnd(Exp exp) {
+			return emitUnOp(SND, exp, 0);
+		}
+
+		@Override
+		public Void visitIntLiteral(IntValue value) {
+			emit(INT_LITERAL, length, index(value));
+			return null;
+		}
+
+		@Override
+		public Void visitBoolLiteral(boolean value) {
+			emit(BOOL_LITERAL, length, value ? 1 : 0);
+			return null;
+		}
+
+		@Override
+		public Void visitVariable(Variable var) {
+			emit(VARIABLE, length, index(var));
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + ops.length + " nodes, " + names.length + " variables)";
+	}
+}
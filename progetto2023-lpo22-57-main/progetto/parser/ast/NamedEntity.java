@@ -2,4 +2,7 @@ package progetto.parser.ast;
 
 public interface NamedEntity {
 	String getName();
+
+	// dense id of the name in the symbol table of the program, see 'SymbolTable'
+	int getId();
 }
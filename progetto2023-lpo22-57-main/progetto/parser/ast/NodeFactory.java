@@ -0,0 +1,109 @@
+package progetto.parser.ast;
+
+import java.util.HashMap;
+
+/*
+ * factory of expression nodes used by the parser; the variables built by the same factory share its symbol table
+ *
+ * a plain factory allocates a new node at each call; a hash-consing factory returns the same node for structurally
+ * equal expressions, hence equal subexpressions are shared and can be compared by identity; since the operands
+ * passed to the factory are already shared, the cached hash codes and the identity test in 'equals' make each
+ * lookup constant time
+ */
+
+public class NodeFactory {
+
+	private final HashMap<Exp, Exp> nodes; // canonical nodes, null if nodes are not shared
+	private final SymbolTable symbols = new SymbolTable(); // names of the variables built by the factory
+
+	private NodeFactory(HashMap<Exp, Exp> nodes) {
+		this.nodes = nodes;
+	}
+
+	// plain factory
+	public NodeFactory() {
+		this(null);
+	}
+
+	// hash-consing factory
+	public static NodeFactory hashConsing() {
+		return new NodeFactory(new HashMap<>());
+	}
+
+	// returns the canonical node equal to 'node'; the cast is safe since equal nodes have the same class
+	@SuppressWarnings("unchecked")
+	private <E extends Exp> E share(E node) {
+		if (nodes == null)
+			return node;
+		var found = nodes.putIfAbsent(node, node);
+		return found == null ? node : (E) found;
+	}
+
+	// number of distinct nodes built so far by a hash-consing factory, 0 for a plain one
+	public int size() {
+		return nodes == null ? 0 : nodes.size();
+	}
+
+	public IntLiteral intLiteral(int value) {
+		return share(new IntLiteral(value));
+	}
+
+	public BoolLiteral boolLiteral(boolean value) {
+		return share(new BoolLiteral(value));
+	}
+
+	// the name is interned in the symbol table of the factory
+	public Variable variable(String name) {
+		final var id = symbols.intern(name);
+		return share(new Variable(symbols.name(id), id));
+	}
+
+	public SymbolTable symbols() {
+		return symbols;
+	}
+
+	public Sign sign(Exp exp) {
+		return share(new Sign(exp));
+	}
+
+	public Not not(Exp exp) {
+		return share(new Not(exp));
+	}
+
+	public Fst fst(Exp exp) {
+		return share(new Fst(exp));
+	}
+
+	public Snd snd(Exp exp) {
+		return share(new Snd(exp));
+	}
+
+	public PairLit pairLit(Exp left, Exp right) {
+		return share(new PairLit(left, right));
+	}
+
+	public And and(Exp left, Exp right) {
+		return share(new And(left, right));
+	}
+
+	public Eq eq(Exp left, Exp right) {
+		return share(new Eq(left, right));
+	}
+
+	public Add add(Exp left, Exp right) {
+		return share(new Add(left, right));
+	}
+
+	public Mul mul(Exp left, Exp right) {
+		return share(new Mul(left, right));
+	}
+
+	public Vector vector(Exp exp1, Exp exp2) {
+		return share(new Vector(exp1, exp2));
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + (nodes == null ? "plain" : nodes.size() + " nodes") + ")";
+	}
+}
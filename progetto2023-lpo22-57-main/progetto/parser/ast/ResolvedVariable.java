@@ -0,0 +1,35 @@
+package progetto.parser.ast;
+
+/*
+ * occurrence of a variable resolved to the scope which declares it: 'depth' is the number of scopes between the
+ * occurrence and the declaring one, 'slot' the position of the variable among the declarations of that scope
+ *
+ * unlike plain variables, resolved variables are never shared among occurrences; they are equal to the plain
+ * variables with the same name
+ */
+
+public class ResolvedVariable extends Variable {
+	private final int depth;
+	private final int slot;
+
+	public ResolvedVariable(String name, int id, int depth, int slot) {
+		super(name, id);
+		if (depth < 0 || slot < 0)
+			throw new IllegalArgumentException("Invalid depth or slot");
+		this.depth = depth;
+		this.slot = slot;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + getName() + "," + depth + "," + slot + ")";
+	}
+}
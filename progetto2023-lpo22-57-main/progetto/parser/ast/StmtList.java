@@ -0,0 +1,24 @@
+package progetto.parser.ast;
+
+import java.util.List;
+
+import progetto.visitors.Visitor;
+
+// non empty sequence of statements, stored in a flat list instead of a right-nested chain
+public class StmtList implements StmtSeq {
+	private final List<Stmt> stmts;
+
+	public StmtList(List<Stmt> stmts) {
+		this.stmts = List.copyOf(stmts); // non-null elements, immutable
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + stmts;
+	}
+
+	@Override
+	public <T> T accept(Visitor<T> visitor) {
+		return visitor.visitStmtList(stmts);
+	}
+}
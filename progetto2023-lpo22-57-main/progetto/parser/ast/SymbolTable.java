@@ -0,0 +1,43 @@
+package progetto.parser.ast;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * symbol table of a program: interns the names of its variables, each one with a dense integer id, starting from 0
+ * in order of first occurrence; all variables of a program must have ids from the same table, so that
+ * environments can index variables by their id
+ */
+
+public class SymbolTable {
+	private final HashMap<String, Integer> ids = new HashMap<>();
+	private final ArrayList<String> names = new ArrayList<>();
+
+	// returns the id of 'name', which is added to the table if not already present
+	public int intern(String name) {
+		var id = ids.get(requireNonNull(name));
+		if (id == null) {
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+
+	// the name with id 'id', shared by all variables with that name
+	public String name(int id) {
+		return names.get(id);
+	}
+
+	// number of names
+	public int size() {
+		return names.size();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + names;
+	}
+}
@@ -4,9 +4,26 @@ import static java.util.Objects.requireNonNull;
 
 public abstract class UnaryOp implements Exp {
 	protected final Exp exp;
+	private final int hash; // cached, since the operand may be a large tree
 
 	protected UnaryOp(Exp exp) {
 		this.exp = requireNonNull(exp);
+		hash = 31 * getClass().hashCode() + exp.hashCode();
+	}
+
+	// structural equality: same operator and equal operands
+	@Override
+	public final boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj instanceof UnaryOp op)
+			return op.getClass() == getClass() && hash == op.hash && exp.equals(op.exp);
+		return false;
+	}
+
+	@Override
+	public final int hashCode() {
+		return hash;
 	}
 
 	@Override
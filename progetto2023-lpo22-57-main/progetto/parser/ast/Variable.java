@@ -6,9 +6,14 @@ import progetto.visitors.Visitor;
 
 public class Variable implements NamedEntity, Exp {
 	private final String name;
+	private final int id;
 
-	public Variable(String name) {
+	// 'id' is the id of 'name' in the symbol table of the program
+	public Variable(String name, int id) {
 		this.name = requireNonNull(name);
+		if (id < 0)
+			throw new IllegalArgumentException("Invalid id " + id);
+		this.id = id;
 	}
 
 	@Override
@@ -16,6 +21,11 @@ public class Variable implements NamedEntity, Exp {
 		return name;
 	}
 
+	@Override
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public final boolean equals(Object obj) {
 		if (this == obj)
@@ -8,11 +8,28 @@ import progetto.visitors.Visitor;
 public class Vector implements Exp {
     private final Exp exp1;
     private final Exp exp2;
+    private final int hash; // cached, since the operands may be large trees
 
     public Vector(Exp exp1, Exp exp2) {
-		this.exp1 = requireNonNull(exp1);
-		this.exp2 = requireNonNull(exp2);
-	}
+        this.exp1 = requireNonNull(exp1);
+        this.exp2 = requireNonNull(exp2);
+        hash = 31 * (31 * Vector.class.hashCode() + exp1.hashCode()) + exp2.hashCode();
+    }
+
+    // structural equality: equal index and dimension
+    @Override
+    public final boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj instanceof Vector v)
+            return hash == v.hash && exp1.equals(v.exp1) && exp2.equals(v.exp2);
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
 
     @Override
     public <T> T accept(Visitor<T> visitor) {
@@ -1,22 +1,23 @@
 package progetto.visitors;
 
+import java.util.List;
+
 import progetto.parser.ast.Block;
 import progetto.parser.ast.Exp;
 import progetto.parser.ast.Stmt;
 import progetto.parser.ast.StmtSeq;
 import progetto.parser.ast.Variable;
+import progetto.visitors.execution.IntValue;
 
 public interface Visitor<T> {
 	T visitAdd(Exp left, Exp right);
 
 	T visitAssignStmt(Variable var, Exp exp);
 
-	T visitIntLiteral(int value);
+	T visitIntLiteral(IntValue value); // the value built with the literal, not one per evaluation
 
 	T visitEq(Exp left, Exp right);
 
-	T visitNonEmptyStmtSeq(Stmt first, StmtSeq rest);
-
 	T visitMul(Exp left, Exp right);
 
 	T visitPrintStmt(Exp exp);
@@ -27,8 +28,6 @@ public interface Visitor<T> {
 
 	T visitVariable(Variable var); // only in this case more efficient then T visitVariable(String name)
 
-	T visitEmptyStmtSeq();
-
 	T visitVarStmt(Variable var, Exp exp);
 
 	T visitNot(Exp exp);
@@ -41,6 +40,8 @@ public interface Visitor<T> {
 
 	T visitBlock(StmtSeq stmtSeq);
 
+	T visitStmtList(List<Stmt> stmts);
+
 	T visitPairLit(Exp left, Exp right);
 
 	T visitFst(Exp exp);
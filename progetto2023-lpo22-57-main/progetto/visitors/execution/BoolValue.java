@@ -1,9 +1,19 @@
 package progetto.visitors.execution;
 
-public class BoolValue extends AtomicValue<Boolean> {
+// boolean value; there are just the two canonical instances TRUE and FALSE, which can be compared by identity
+public final class BoolValue implements Value {
 
-	public BoolValue(Boolean value) {
-		super(value);
+	public static final BoolValue TRUE = new BoolValue(true);
+	public static final BoolValue FALSE = new BoolValue(false);
+
+	private final boolean value;
+
+	private BoolValue(boolean value) {
+		this.value = value;
+	}
+
+	public static BoolValue of(boolean value) {
+		return value ? TRUE : FALSE;
 	}
 
 	@Override
@@ -11,4 +21,19 @@ public class BoolValue extends AtomicValue<Boolean> {
 		return value;
 	}
 
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public int hashCode() {
+		return Boolean.hashCode(value);
+	}
+
+	@Override
+	public String toString() {
+		return Boolean.toString(value);
+	}
+
 }
@@ -1,7 +1,9 @@
 package progetto.visitors.execution;
 
 import java.io.PrintWriter;
+import java.util.List;
 
+import progetto.environments.Environment;
 import progetto.environments.EnvironmentException;
 import progetto.environments.GenEnvironment;
 import progetto.parser.ast.Block;
@@ -15,15 +17,26 @@ import static java.util.Objects.requireNonNull;
 
 public class Execute implements Visitor<Value> {
 
-	private final GenEnvironment<Value> env = new GenEnvironment<>();
+	private final Environment<Value> env;
 	private final PrintWriter printWriter; // output stream used to print values
+	private final ValuePrinter printer; // prints values directly into 'printWriter'
+	private final VectorFusion fusion = new VectorFusion(this); // evaluates additions and multiplications
 
 	public Execute() {
+		env = new GenEnvironment<>();
 		printWriter = new PrintWriter(System.out, true);
+		printer = new ValuePrinter(printWriter);
 	}
 
 	public Execute(PrintWriter printWriter) {
+		this(printWriter, new GenEnvironment<>());
+	}
+
+	// 'env' must be a 'FrameEnvironment' for programs resolved by 'Resolve'
+	public Execute(PrintWriter printWriter, Environment<Value> env) {
 		this.printWriter = requireNonNull(printWriter);
+		this.env = requireNonNull(env);
+		this.printer = new ValuePrinter(printWriter);
 	}
 
 	// dynamic semantics for programs; no value returned by the visitor
@@ -40,6 +53,18 @@ public class Execute implements Visitor<Value> {
 		return null;
 	}
 
+	/*
+	 * dynamic semantics for a top-level statement, in the environment built by the previously executed ones;
+	 * used to execute programs one statement at a time
+	 */
+	public void execute(Stmt stmt) {
+		try {
+			stmt.accept(this);
+		} catch (EnvironmentException e) { // undefined variable
+			throw new InterpreterException(e);
+		}
+	}
+
 	// dynamic semantics for statements; no value returned by the visitor
 
 	@Override
@@ -50,7 +75,7 @@ public class Execute implements Visitor<Value> {
 
 	@Override
 	public Value visitPrintStmt(Exp exp) {
-		printWriter.println(exp.accept(this));
+		printer.println(exp.accept(this));
 		return null;
 	}
 
@@ -81,14 +106,9 @@ public class Execute implements Visitor<Value> {
 	// no value returned by the visitor
 
 	@Override
-	public Value visitEmptyStmtSeq() {
-		return null;
-	}
-
-	@Override
-	public Value visitNonEmptyStmtSeq(Stmt first, StmtSeq rest) {
-		first.accept(this);
-		rest.accept(this);
+	public Value visitStmtList(List<Stmt> stmts) {
+		for (var stmt : stmts)
+			stmt.accept(this);
 		return null;
 	}
 
@@ -96,66 +116,22 @@ public class Execute implements Visitor<Value> {
 
 	@Override
 	public Value visitAdd(Exp left, Exp right) { // PROGETTO
-		Value leftValue = left.accept(this);
-		Value rightValue = right.accept(this);
-		if (leftValue instanceof IntValue && rightValue instanceof IntValue)
-			return new IntValue(((IntValue) leftValue).toInt() + ((IntValue) rightValue).toInt());
-		else if (leftValue instanceof VectorValue leftVector && rightValue instanceof VectorValue rightVector) {
-			if (leftVector.size().toInt() != rightVector.size().toInt()) {
-				throw new InterpreterException("Vectors must have the same dimension");
-			}
-			VectorValue result = new VectorValue(leftVector.size());
-			for (int i = 0; i < leftVector.size().toInt(); i++) {
-				result.set(i, new IntValue(leftVector.get(i).toInt() + rightVector.get(i).toInt()));
-			}
-			return result;
-		} else if (leftValue instanceof IntValue) // arrivati qui, se il primo operatore è un intero, il secondo sarà un
-			throw new InterpreterException("ExpectingDynamicType Int"); // tipo inaspettato, sollevo un eccezione
-		else if (leftValue instanceof VectorValue) // arrivati qui, se il primo operatore è un vettore, il secondo sarà
-			throw new InterpreterException("ExpectingDynamicType Vect"); // un tipo inaspettato, sollevo un eccezione
-		throw new InterpreterException("Type mismatch ADD");
+		return VectorFusion.force(fusion.visitAdd(left, right));
 	}
 
 	@Override
-	public IntValue visitIntLiteral(int value) {
-		return new IntValue(value);
+	public IntValue visitIntLiteral(IntValue value) {
+		return value;
 	}
 
 	@Override
 	public Value visitMul(Exp left, Exp right) { // PROGETTO
-		Value leftValue = left.accept(this);
-		Value rightValue = right.accept(this);
-		if (leftValue instanceof IntValue && rightValue instanceof IntValue)
-			return new IntValue(((IntValue) leftValue).toInt() * ((IntValue) rightValue).toInt());
-		else if (leftValue instanceof VectorValue leftVector && rightValue instanceof VectorValue rightVector) {
-			if (leftVector.size().toInt() != rightVector.size().toInt())
-				throw new InterpreterException("Vectors must have the same dimension");
-			int result = 0;
-			for (int i = 0; i < leftVector.size().toInt(); i++) {
-				result += leftVector.get(i).toInt() * rightVector.get(i).toInt();
-			}
-			return new IntValue(result);
-		} else if ((leftValue instanceof IntValue && rightValue instanceof VectorValue) || (leftValue instanceof VectorValue && rightValue instanceof IntValue)) {
-			if (leftValue instanceof IntValue) {
-				VectorValue vector = new VectorValue(((VectorValue) rightValue).size());
-				for (int i = 0; i < rightValue.toVector().size().toInt(); i++) {
-					vector.set(i, new IntValue(leftValue.toInt() * rightValue.toVector().get(i).toInt()));
-				}
-				return vector;
-			} else {
-				VectorValue vector = new VectorValue(((VectorValue) leftValue).size());
-				for (int i = 0; i < leftValue.toVector().size().toInt(); i++) {
-					vector.set(i, new IntValue(leftValue.toVector().get(i).toInt() * rightValue.toInt()));
-				}
-				return vector;
-			}
-		}
-		throw new InterpreterException("Type mismatch MUL");
+		return VectorFusion.force(fusion.visitMul(left, right));
 	}
 
 	@Override
 	public IntValue visitSign(Exp exp) {
-		return new IntValue(-exp.accept(this).toInt());
+		return IntValue.of(-exp.accept(this).toInt());
 	}
 
 	@Override
@@ -165,22 +141,22 @@ public class Execute implements Visitor<Value> {
 
 	@Override
 	public BoolValue visitNot(Exp exp) {
-		return new BoolValue(!exp.accept(this).toBool());
+		return BoolValue.of(!exp.accept(this).toBool());
 	}
 
 	@Override
 	public BoolValue visitAnd(Exp left, Exp right) {
-		return new BoolValue(left.accept(this).toBool() && right.accept(this).toBool());
+		return BoolValue.of(left.accept(this).toBool() && right.accept(this).toBool());
 	}
 
 	@Override
 	public BoolValue visitBoolLiteral(boolean value) {
-		return new BoolValue(value);
+		return BoolValue.of(value);
 	}
 
 	@Override
 	public BoolValue visitEq(Exp left, Exp right) {
-		return new BoolValue(left.accept(this).equals(right.accept(this)));
+		return BoolValue.of(left.accept(this).equals(right.accept(this)));
 	}
 
 	@Override
@@ -202,11 +178,11 @@ public class Execute implements Visitor<Value> {
 	public Value visitForeach(Variable var, Exp exp, Block thenBlock) { // PROGETTO
 		VectorValue vector = exp.accept(this).toVector();
 		env.enterScope();
-		env.dec(var, new IntValue(1));
-		for (int i = 0; i < vector.size().toInt(); i++) {
-			env.update(var, vector.get(i));
+		env.dec(var, IntValue.of(1));
+		vector.forEach(element -> {
+			env.update(var, IntValue.of(element)); // elements are boxed into values only here
 			thenBlock.accept(this);
-		}
+		});
 		env.exitScope();
 		return null;
 	}
@@ -0,0 +1,71 @@
+package progetto.visitors.execution;
+
+import java.util.Arrays;
+
+/*
+ * loops over arrays of ints used by the vector operations; this class implements them with scalar loops,
+ * 'SimdIntKernels' with the SIMD instructions of the processor, through the incubating Vector API
+ *
+ * 'SimdIntKernels' is in the separate source folder 'simd', since it compiles only with the option
+ * --add-modules jdk.incubator.vector; it is used if it has been compiled into the class path and the module
+ * is available at run time, that is, if java is run with the same option; otherwise it is not even loaded and
+ * the scalar loops are used; int operations wrap around in both cases, and since the sums are computed
+ * modulo 2^32, the results do not depend on the order of the operations
+ */
+class IntKernels {
+
+	private static final String SIMD_KERNELS = "progetto.visitors.execution.SimdIntKernels";
+
+	// the kernels used by the vector operations
+	static final IntKernels KERNELS = load();
+
+	private static IntKernels load() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+			try {
+				return (IntKernels) Class.forName(SIMD_KERNELS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) { // not compiled or not supported
+			}
+		return new IntKernels();
+	}
+
+	/*
+	 * each kernel works on the indices from 'from' included to 'to' excluded of arrays with the same length, so
+	 * that the ranges of long arrays can be processed in parallel, see 'ParallelRanges'
+	 */
+
+	// 'result' = 'left' + 'right', element by element
+	void add(int[] left, int[] right, int[] result, int from, int to) {
+		for (var i = from; i < to; i++)
+			result[i] = left[i] + right[i];
+	}
+
+	// 'result' = 'factor' * 'elements', element by element
+	void scale(int factor, int[] elements, int[] result, int from, int to) {
+		for (var i = from; i < to; i++)
+			result[i] = factor * elements[i];
+	}
+
+	// 'result' += 'factor' * 'elements', element by element
+	void addScaled(int factor, int[] elements, int[] result, int from, int to) {
+		for (var i = from; i < to; i++)
+			result[i] += factor * elements[i];
+	}
+
+	// dot product
+	int dot(int[] left, int[] right, int from, int to) {
+		var result = 0;
+		for (var i = from; i < to; i++)
+			result += left[i] * right[i];
+		return result;
+	}
+
+	// true if the arrays have the same elements; the JDK compares them with its vectorized mismatch
+	boolean equals(int[] left, int[] right, int from, int to) {
+		return Arrays.equals(left, from, to, right, from, to);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
@@ -1,9 +1,40 @@
 package progetto.visitors.execution;
 
-public class IntValue extends AtomicValue<Integer> {
+/*
+ * integer value; the values from LOW to the upper bound of the cache are canonical and shared, the others are
+ * allocated by 'of', hence values must be compared with 'equals'
+ */
+public final class IntValue implements Value {
 
-	public IntValue(Integer value) {
-		super(value);
+	private static final int LOW = -128;
+	private static final int DEFAULT_HIGH = 1023;
+
+	// values from LOW on, built on first use
+	private static IntValue[] cache = new IntValue[DEFAULT_HIGH - LOW + 1];
+
+	private final int value;
+
+	private IntValue(int value) {
+		this.value = value;
+	}
+
+	// the value 'value', shared if cached
+	public static IntValue of(int value) {
+		final var cache = IntValue.cache;
+		final var index = value - LOW; // negative also for overflow
+		if (index < 0 || index >= cache.length)
+			return new IntValue(value);
+		var cached = cache[index];
+		if (cached == null)
+			cache[index] = cached = new IntValue(value);
+		return cached;
+	}
+
+	// caches the values from LOW to 'high', to be called before running a program
+	public static void cacheUpTo(int high) {
+		if (high < LOW - 1)
+			throw new IllegalArgumentException("Invalid upper bound of the integer cache " + high);
+		cache = new IntValue[high - LOW + 1];
 	}
 
 	@Override
@@ -11,4 +42,21 @@ public class IntValue extends AtomicValue<Integer> {
 		return value;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		return obj instanceof IntValue iv && value == iv.value;
+	}
+
+	@Override
+	public int hashCode() {
+		return Integer.hashCode(value);
+	}
+
+	@Override
+	public String toString() {
+		return Integer.toString(value);
+	}
+
+}
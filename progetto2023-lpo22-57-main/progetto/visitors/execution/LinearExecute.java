@@ -0,0 +1,158 @@
+package progetto.visitors.execution;
+
+import static java.util.Objects.requireNonNull;
+import static progetto.parser.ast.LinearProg.*;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import progetto.environments.Environment;
+import progetto.environments.EnvironmentException;
+import progetto.parser.ast.LinearProg;
+
+/*
+ * dynamic semantics of a 'LinearProg', computed by walking its arrays by node index, without the views which
+ * 'LinearProg.accept' builds to be visited by 'Execute'
+ *
+ * the output, the errors and the order of evaluation are the same as for 'Execute': statements are executed
+ * recursively, while each expression is evaluated by a loop over its nodes, which skips the right operand of '&&'
+ * if the left one is false, see 'LinearProg.andFrom()'
+ */
+public class LinearExecute {
+
+	private final LinearProg prog;
+	private final Environment<Value> env;
+	private final ValuePrinter printer; // prints values directly into the output stream
+	private int[] stmts = new int[64]; // the statements of the sequences being executed, in order
+	private int top; // number of elements of 'stmts' in use
+
+	// 'env' must not be a 'FrameEnvironment', which is only for programs resolved by 'Resolve'
+	public LinearExecute(LinearProg prog, PrintWriter printWriter, Environment<Value> env) {
+		this.prog = requireNonNull(prog);
+		this.env = requireNonNull(env);
+		printer = new ValuePrinter(requireNonNull(printWriter));
+	}
+
+	public void execute() {
+		try {
+			stmtList(prog.last(prog.root()));
+			// possible runtime errors
+			// EnvironmentException: undefined variable
+		} catch (EnvironmentException e) {
+			throw new InterpreterException(e);
+		}
+	}
+
+	// executes the statements of a STMT_LIST node; its children can only be found from the last one backwards
+	private void stmtList(int node) {
+		final var count = prog.operand(node);
+		final var start = top;
+		if (start + count > stmts.length)
+			stmts = Arrays.copyOf(stmts, Math.max(2 * stmts.length, start + count));
+		for (int child = prog.last(node), i = start + count - 1; i >= start; child = prog.previous(child), i--)
+			stmts[i] = child;
+		top = start + count;
+		for (var i = start; i < start + count; i++)
+			stmt(stmts[i]);
+		top = start;
+	}
+
+	private void stmt(int node) {
+		switch (prog.op(node)) {
+		case ASSIGN_STMT -> env.update(prog.name(node), exp(prog.last(node)));
+		case VAR_STMT -> env.dec(prog.name(node), exp(prog.last(node)));
+		case PRINT_STMT -> printer.println(exp(prog.last(node)));
+		case IF_STMT -> ifStmt(node);
+		case FOREACH -> foreach(node);
+		default -> throw new AssertionError("Fatal error: invalid statement opcode " + prog.op(node));
+		}
+	}
+
+	private void ifStmt(int node) {
+		final var last = prog.last(node);
+		final var hasElse = prog.operand(node) != 0;
+		final var thenBlock = hasElse ? prog.previous(last) : last;
+		if (exp(prog.previous(thenBlock)).toBool())
+			block(thenBlock);
+		else if (hasElse)
+			block(last);
+	}
+
+	private void foreach(int node) { // PROGETTO
+		final var body = prog.last(node);
+		final var vector = exp(prog.previous(body)).toVector();
+		final var var = prog.name(node);
+		env.enterScope();
+		env.dec(var, IntValue.of(1));
+		vector.forEach(element -> {
+			env.update(var, IntValue.of(element)); // elements are boxed into values only here
+			block(body);
+		});
+		env.exitScope();
+	}
+
+	private void block(int node) {
+		env.enterScope();
+		stmtList(prog.last(node));
+		env.exitScope();
+	}
+
+	/*
+	 * the value of the expression 'root', computed by a scan of its nodes in postorder, with a stack of the values
+	 * of the operands; the values of additions and multiplications of vectors are lazy, see 'VectorFusion', and
+	 * are forced by the nodes which use them
+	 */
+	private Value exp(int root) {
+		final var stack = new Value[prog.size(root)];
+		var top = 0;
+		var rank = prog.andFrom(prog.first(root)); // the next AND node whose left operand is scanned
+		var andLeft = rank < prog.andCount() ? prog.andLeft(rank) : Integer.MAX_VALUE;
+		for (var node = prog.first(root); node <= root; node++) {
+			switch (prog.op(node)) {
+			case INT_LITERAL -> stack[top++] = prog.value(node);
+			case BOOL_LITERAL -> stack[top++] = BoolValue.of(prog.operand(node) != 0);
+			case VARIABLE -> stack[top++] = env.lookup(prog.name(node));
+			case ADD -> { // PROGETTO
+				final var right = stack[--top];
+				stack[top - 1] = VectorFusion.add(stack[top - 1], right);
+			}
+			case MUL -> { // PROGETTO
+				final var right = stack[--top];
+				stack[top - 1] = VectorFusion.mul(stack[top - 1], right);
+			}
+			case AND -> // reached only if the left operand is true
+				stack[top - 1] = BoolValue.of(VectorFusion.force(stack[top - 1]).toBool());
+			case EQ -> {
+				final var right = VectorFusion.force(stack[--top]);
+				stack[top - 1] = BoolValue.of(VectorFusion.force(stack[top - 1]).equals(right));
+			}
+			case PAIR_LIT -> {
+				final var right = VectorFusion.force(stack[--top]);
+				stack[top - 1] = new PairValue(VectorFusion.force(stack[top - 1]), right);
+			}
+			case VECTOR -> { // PROGETTO
+				final var right = VectorFusion.force(stack[--top]);
+				stack[top - 1] = new VectorValue(VectorFusion.force(stack[top - 1]), right);
+			}
+			case SIGN -> stack[top - 1] = IntValue.of(-VectorFusion.force(stack[top - 1]).toInt());
+			case NOT -> stack[top - 1] = BoolValue.of(!VectorFusion.force(stack[top - 1]).toBool());
+			case FST -> stack[top - 1] = VectorFusion.force(stack[top - 1]).toPair().getFstVal();
+			case SND -> stack[top - 1] = VectorFusion.force(stack[top - 1]).toPair().getSndVal();
+			default -> throw new AssertionError("Fatal error: invalid expression opcode " + prog.op(node));
+			}
+			// the right operand is skipped if the left one is false; the AND node may be the left operand of another
+			while (node == andLeft) {
+				if (!VectorFusion.force(stack[top - 1]).toBool()) {
+					node = prog.and(rank);
+					stack[top - 1] = BoolValue.FALSE;
+				} else
+					top--;
+				while (++rank < prog.andCount() && prog.andLeft(rank) < node)
+					;
+				andLeft = rank < prog.andCount() ? prog.andLeft(rank) : Integer.MAX_VALUE;
+			}
+		}
+		assert top == 1;
+		return VectorFusion.force(stack[0]);
+	}
+}
@@ -0,0 +1,140 @@
+package progetto.visitors.execution;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.function.IntConsumer;
+
+/*
+ * array of ints stored outside the Java heap, in direct buffers of at most CHUNK ints, initially all 0
+ *
+ * the heap contains just the buffer objects, hence the garbage collector never scans or copies the elements;
+ * the memory of the buffers is released when the array becomes unreachable, like for any direct buffer, and
+ * its total size is bounded by the option -XX:MaxDirectMemorySize of the JVM
+ */
+final class OffHeapInts {
+
+	private static final int CHUNK_BITS = 26;
+	private static final int CHUNK = 1 << CHUNK_BITS; // 64M ints, 256MB per buffer
+
+	private final IntBuffer[] chunks;
+	private final int length;
+
+	OffHeapInts(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("Negative length " + length);
+		this.length = length;
+		chunks = new IntBuffer[(int) (((long) length + CHUNK - 1) >>> CHUNK_BITS)];
+		for (var c = 0; c < chunks.length; c++) {
+			final var size = Math.min(CHUNK, length - (c << CHUNK_BITS));
+			chunks[c] = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+	}
+
+	int length() {
+		return length;
+	}
+
+	int get(int index) {
+		return chunks[index >>> CHUNK_BITS].get(index & (CHUNK - 1));
+	}
+
+	void set(int index, int value) {
+		chunks[index >>> CHUNK_BITS].put(index & (CHUNK - 1), value);
+	}
+
+	// adds 'value' to the element of index 'index'
+	void add(int index, int value) {
+		final var chunk = chunks[index >>> CHUNK_BITS];
+		final var offset = index & (CHUNK - 1);
+		chunk.put(offset, chunk.get(offset) + value);
+	}
+
+	// adds 'factor' * 'other' to this array, element by element; the arrays have the same length
+	void addScaled(int factor, OffHeapInts other) {
+		ParallelRanges.forEach(length, (from, to) -> addScaled(factor, other, from, to));
+	}
+
+	// as above, for the indices from 'from' included to 'to' excluded
+	private void addScaled(int factor, OffHeapInts other, int from, int to) {
+		for (var c = from >>> CHUNK_BITS; from < to; c++) {
+			final var chunk = chunks[c];
+			final var otherChunk = other.chunks[c];
+			final var base = c << CHUNK_BITS;
+			final var end = Math.min(to - base, chunk.limit());
+			for (var i = from - base; i < end; i++)
+				chunk.put(i, chunk.get(i) + factor * otherChunk.get(i));
+			from = base + end;
+		}
+	}
+
+	// dot product with 'other', with the same length
+	int dot(OffHeapInts other) {
+		return ParallelRanges.sum(length, (from, to) -> dot(other, from, to));
+	}
+
+	private int dot(OffHeapInts other, int from, int to) {
+		var result = 0;
+		for (var c = from >>> CHUNK_BITS; from < to; c++) {
+			final var chunk = chunks[c];
+			final var otherChunk = other.chunks[c];
+			final var base = c << CHUNK_BITS;
+			final var end = Math.min(to - base, chunk.limit());
+			for (var i = from - base; i < end; i++)
+				result += chunk.get(i) * otherChunk.get(i);
+			from = base + end;
+		}
+		return result;
+	}
+
+	void forEach(IntConsumer action) {
+		for (var chunk : chunks)
+			for (var i = 0; i < chunk.limit(); i++)
+				action.accept(chunk.get(i));
+	}
+
+	// same elements
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof OffHeapInts other) || length != other.length)
+			return false;
+		return ParallelRanges.all(length, (from, to) -> equals(other, from, to));
+	}
+
+	private boolean equals(OffHeapInts other, int from, int to) {
+		for (var c = from >>> CHUNK_BITS; from < to; c++) {
+			final var base = c << CHUNK_BITS;
+			final var offset = from - base;
+			final var count = Math.min(to - base, chunks[c].limit()) - offset;
+			if (!chunks[c].slice(offset, count).equals(other.chunks[c].slice(offset, count)))
+				return false;
+			from = base + offset + count;
+		}
+		return true;
+	}
+
+	/*
+	 * same as 'Arrays.hashCode' of the elements, that is, 31^n + the sum of the terms a[i]*31^(n-1-i): the sums
+	 * of the terms of the ranges are computed in parallel
+	 */
+	@Override
+	public int hashCode() {
+		return VectorValue.pow31(length) + ParallelRanges.sum(length, this::hashTerms);
+	}
+
+	// sum of the terms of the hash code for the indices from 'from' included to 'to' excluded
+	private int hashTerms(int from, int to) {
+		var result = 0;
+		for (var c = from >>> CHUNK_BITS; from < to; c++) {
+			final var chunk = chunks[c];
+			final var base = c << CHUNK_BITS;
+			final var last = Math.min(to - base, chunk.limit());
+			for (var i = from - base; i < last; i++)
+				result = 31 * result + chunk.get(i);
+			from = base + last;
+		}
+		return result * VectorValue.pow31(length - to);
+	}
+}
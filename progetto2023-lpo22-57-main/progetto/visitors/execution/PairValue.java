@@ -28,7 +28,7 @@ public class PairValue implements Value {
 
 	@Override
 	public String toString() {
-		return "(" + fstVal + "," + sndVal + ")";
+		return ValuePrinter.toString(this);
 	}
 
 	@Override
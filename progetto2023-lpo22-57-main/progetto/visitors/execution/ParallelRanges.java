@@ -0,0 +1,94 @@
+package progetto.visitors.execution;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/*
+ * runs the operations on the elements of long vectors in parallel on a fork/join pool: the indices from 0 to the
+ * length of a vector are split into consecutive ranges of at least MIN_RANGE indices, each one processed by a
+ * task; vectors with less than 'minLength' elements are processed by the calling thread, without any task
+ *
+ * the results of the ranges are combined in order; they are sums modulo 2^32 and conjunctions, hence the
+ * result does not depend on the number of threads and is the same as the sequential one
+ */
+final class ParallelRanges {
+
+	// operation on the indices from 'from' included to 'to' excluded
+	interface RangeAction {
+		void run(int from, int to);
+	}
+
+	interface RangeSum {
+		int sum(int from, int to);
+	}
+
+	interface RangeTest {
+		boolean test(int from, int to);
+	}
+
+	private static final int MIN_RANGE = 1 << 16;
+	private static final int ALIGNMENT = 1 << 10; // ranges start at multiples of ALIGNMENT
+
+	private static ForkJoinPool pool = ForkJoinPool.commonPool(); // null if operations are sequential
+	private static int minLength = 1 << 20;
+
+	private ParallelRanges() {
+	}
+
+	// runs operations on 'parallelism' threads, sequentially if 'parallelism' is 1; to be called before running a program
+	static void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+		pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+	}
+
+	// runs operations in parallel on vectors with at least 'length' elements; to be called before running a program
+	static void setMinLength(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("Invalid minimum length of parallel vectors " + length);
+		minLength = length;
+	}
+
+	private static boolean isSequential(int length) {
+		return pool == null || length < minLength || pool.getParallelism() == 1;
+	}
+
+	// about four ranges per thread
+	private static int rangeSize(int length) {
+		final var size = Math.max(MIN_RANGE, length / (4 * pool.getParallelism()));
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	private static int end(int range, int size, int length) {
+		return (int) Math.min(length, (long) (range + 1) * size);
+	}
+
+	static void forEach(int length, RangeAction action) {
+		if (isSequential(length)) {
+			action.run(0, length);
+			return;
+		}
+		final var size = rangeSize(length);
+		final var ranges = (int) (((long) length + size - 1) / size);
+		pool.submit(() -> IntStream.range(0, ranges).parallel()
+				.forEach(r -> action.run(r * size, end(r, size, length)))).join();
+	}
+
+	static int sum(int length, RangeSum sum) {
+		if (isSequential(length))
+			return sum.sum(0, length);
+		final var size = rangeSize(length);
+		final var ranges = (int) (((long) length + size - 1) / size);
+		return pool.submit(() -> IntStream.range(0, ranges).parallel()
+				.map(r -> sum.sum(r * size, end(r, size, length))).sum()).join();
+	}
+
+	static boolean all(int length, RangeTest test) {
+		if (isSequential(length))
+			return test.test(0, length);
+		final var size = rangeSize(length);
+		final var ranges = (int) (((long) length + size - 1) / size);
+		return pool.submit(() -> IntStream.range(0, ranges).parallel()
+				.allMatch(r -> test.test(r * size, end(r, size, length)))).join();
+	}
+}
@@ -0,0 +1,106 @@
+package progetto.visitors.execution;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/*
+ * prints values in the format of the language, directly into a 'PrintWriter': the characters, including the
+ * digits of the integers, are formatted into a reusable buffer which is written when full, hence printing
+ * takes time linear in the size of the output and allocates no strings
+ */
+final class ValuePrinter {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_INT_LENGTH = 11; // "-2147483648"
+
+	private final PrintWriter out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int size; // number of characters in 'buffer'
+
+	ValuePrinter(PrintWriter out) {
+		this.out = requireNonNull(out);
+	}
+
+	// the string printed for 'value'
+	static String toString(Value value) {
+		final var string = new StringWriter();
+		final var printer = new ValuePrinter(new PrintWriter(string));
+		printer.print(value);
+		printer.out.flush();
+		return string.toString();
+	}
+
+	// prints 'value' followed by a line separator
+	void println(Value value) {
+		print(value);
+		out.println();
+	}
+
+	// prints 'value'
+	void print(Value value) {
+		append(value);
+		flushBuffer();
+	}
+
+	private void append(Value value) {
+		if (value instanceof IntValue)
+			appendInt(value.toInt());
+		else if (value instanceof BoolValue)
+			appendString(value.toBool() ? "true" : "false");
+		else if (value instanceof PairValue pair) {
+			appendChar('(');
+			append(pair.getFstVal());
+			appendChar(',');
+			append(pair.getSndVal());
+			appendChar(')');
+		} else if (value instanceof VectorValue vector) {
+			appendChar('[');
+			vector.forEach(element -> {
+				appendInt(element);
+				appendChar(';');
+			});
+			if (vector.length() > 0)
+				size--; // the last ';'
+			appendChar(']');
+		} else
+			appendString(String.valueOf(value));
+	}
+
+	private void flushBuffer() {
+		out.write(buffer, 0, size);
+		size = 0;
+	}
+
+	private void appendChar(char c) {
+		if (size == buffer.length)
+			flushBuffer();
+		buffer[size++] = c;
+	}
+
+	private void appendString(String s) {
+		for (var i = 0; i < s.length(); i++)
+			appendChar(s.charAt(i));
+	}
+
+	// writes the digits from the last one, working on negative numbers to handle Integer.MIN_VALUE
+	private void appendInt(int n) {
+		if (buffer.length - size < MAX_INT_LENGTH)
+			flushBuffer();
+		var negative = n;
+		if (n > 0)
+			negative = -n;
+		var length = n < 0 ? 2 : 1;
+		for (var m = negative / 10; m != 0; m /= 10)
+			length++;
+		var i = size + length;
+		do {
+			buffer[--i] = (char) ('0' - negative % 10);
+			negative /= 10;
+		} while (negative != 0);
+		if (n < 0)
+			buffer[--i] = '-';
+		size += length;
+	}
+}
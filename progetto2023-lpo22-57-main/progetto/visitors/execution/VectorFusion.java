@@ -0,0 +1,284 @@
+package progetto.visitors.execution;
+
+import static java.util.Objects.requireNonNull;
+import static progetto.visitors.execution.IntKernels.KERNELS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import progetto.parser.ast.Block;
+import progetto.parser.ast.Exp;
+import progetto.parser.ast.Stmt;
+import progetto.parser.ast.StmtSeq;
+import progetto.parser.ast.Variable;
+import progetto.visitors.Visitor;
+
+/*
+ * fused evaluation of the trees of additions and multiplications, used by 'Execute'
+ *
+ * the operands which are not additions or multiplications are evaluated by 'Execute', in the same order; the
+ * additions and multiplications of vectors by scalars do not compute their results, but return lazy vectors,
+ * which are forced by 'force' at the root of the tree: since these operations are linear, a lazy vector is a
+ * linear combination of the vectors computed by 'Execute', whose elements are computed in a single pass into one
+ * buffer; the coefficients are computed modulo 2^32, hence the result is the same as with the operations of
+ * 'VectorValue'; the dynamic errors are checked at each node, as soon as its operands are evaluated, as 'Execute'
+ * would do without fusion
+ */
+class VectorFusion implements Visitor<Value> {
+
+	private static final int BLOCK = 1024; // number of elements of the blocks computed by 'LazyVector.combine'
+
+	private final Execute execute; // visitor for the other nodes
+
+	VectorFusion(Execute execute) {
+		this.execute = requireNonNull(execute);
+	}
+
+	/*
+	 * lazy vector, the sum of 'left' and 'right' multiplied by 'factor'; operands are either lazy vectors or
+	 * vectors; lazy vectors never escape from this class
+	 */
+	private static final class LazyVector implements Value {
+		private final int factor;
+		private final Value left, right; // 'right' is null for multiplications by a scalar
+		private final int length;
+
+		private LazyVector(int factor, Value left, Value right, int length) {
+			this.factor = factor;
+			this.left = left;
+			this.right = right;
+			this.length = length;
+		}
+
+		// adds the vectors of this linear combination multiplied by 'factor' to 'vectors' and their coefficients to 'factors'
+		private void collect(int factor, List<VectorValue> vectors, List<Integer> factors) {
+			factor *= this.factor;
+			if (factor == 0)
+				return;
+			collect(left, factor, vectors, factors);
+			if (right != null)
+				collect(right, factor, vectors, factors);
+		}
+
+		private static void collect(Value vector, int factor, List<VectorValue> vectors, List<Integer> factors) {
+			if (vector instanceof LazyVector lazy)
+				lazy.collect(factor, vectors, factors);
+			else {
+				vectors.add((VectorValue) vector);
+				factors.add(factor);
+			}
+		}
+
+		/*
+		 * the elements of the dense vectors are combined in a single pass, those of the sparse vectors are added
+		 * afterwards; if all vectors are sparse, the result is sparse too
+		 */
+		private VectorValue force() {
+			final var vectors = new ArrayList<VectorValue>();
+			final var factors = new ArrayList<Integer>();
+			collect(1, vectors, factors);
+			final var dense = new ArrayList<int[]>();
+			final var denseFactors = new ArrayList<Integer>();
+			VectorValue sparse = null;
+			for (var i = 0; i < vectors.size(); i++) {
+				final var vector = vectors.get(i);
+				final int factor = factors.get(i);
+				if (!vector.isSparse()) {
+					dense.add(vector.elements());
+					denseFactors.add(factor);
+				} else {
+					final var scaled = factor == 1 ? vector : vector.scale(factor);
+					sparse = sparse == null ? scaled : sparse.add(scaled);
+				}
+			}
+			if (dense.isEmpty())
+				return sparse != null ? sparse : new VectorValue(IntValue.of(length));
+			final VectorValue result;
+			if (VectorValue.isOffHeap(length) || dense.contains(null)) { // one pass for each vector
+				result = VectorValue.zeros(length);
+				for (var i = 0; i < vectors.size(); i++)
+					if (!vectors.get(i).isSparse())
+						vectors.get(i).addScaledTo(result, factors.get(i));
+			} else
+				result = new VectorValue(combine(dense, denseFactors));
+			if (sparse != null)
+				sparse.addScaledTo(result, 1);
+			return result;
+		}
+
+		/*
+		 * sum of the elements of 'dense' multiplied by 'factors'; the result is computed one block at a time, so
+		 * that each block stays in the cache while all the vectors are added to it, and long results are split
+		 * into ranges of blocks computed in parallel
+		 */
+		private int[] combine(List<int[]> dense, List<Integer> factors) {
+			final var result = new int[length];
+			ParallelRanges.forEach(length, (from, to) -> {
+				for (var start = from; start < to; start += BLOCK) {
+					final var end = Math.min(start + BLOCK, to);
+					for (var j = 0; j < dense.size(); j++)
+						KERNELS.addScaled(factors.get(j), dense.get(j), result, start, end);
+				}
+			});
+			return result;
+		}
+	}
+
+	// the vector denoted by 'value', if lazy, otherwise 'value' itself
+	static Value force(Value value) {
+		return value instanceof LazyVector lazy ? lazy.force() : value;
+	}
+
+	private static VectorValue forceVector(Value value) {
+		return value instanceof LazyVector lazy ? lazy.force() : (VectorValue) value;
+	}
+
+	private static boolean isVector(Value value) {
+		return value instanceof VectorValue || value instanceof LazyVector;
+	}
+
+	private static int length(Value vector) {
+		return vector instanceof LazyVector lazy ? lazy.length : ((VectorValue) vector).length();
+	}
+
+	// same semantics and errors as 'Execute' without fusion
+
+	@Override
+	public Value visitAdd(Exp left, Exp right) {
+		return add(left.accept(this), right.accept(this));
+	}
+
+	@Override
+	public Value visitMul(Exp left, Exp right) {
+		return mul(left.accept(this), right.accept(this));
+	}
+
+	/*
+	 * the sum and the product of the values of the operands, which may be lazy vectors; also used by
+	 * 'LinearExecute', which evaluates the operands without visiting trees
+	 */
+	static Value add(Value leftValue, Value rightValue) {
+		if (leftValue instanceof IntValue && rightValue instanceof IntValue)
+			return IntValue.of(leftValue.toInt() + rightValue.toInt());
+		else if (isVector(leftValue) && isVector(rightValue)) {
+			if (length(leftValue) != length(rightValue))
+				throw new InterpreterException("Vectors must have the same dimension");
+			return new LazyVector(1, leftValue, rightValue, length(leftValue));
+		} else if (leftValue instanceof IntValue)
+			throw new InterpreterException("ExpectingDynamicType Int");
+		else if (isVector(leftValue))
+			throw new InterpreterException("ExpectingDynamicType Vect");
+		throw new InterpreterException("Type mismatch ADD");
+	}
+
+	static Value mul(Value leftValue, Value rightValue) {
+		if (leftValue instanceof IntValue && rightValue instanceof IntValue)
+			return IntValue.of(leftValue.toInt() * rightValue.toInt());
+		else if (isVector(leftValue) && isVector(rightValue)) {
+			if (length(leftValue) != length(rightValue))
+				throw new InterpreterException("Vectors must have the same dimension");
+			return IntValue.of(forceVector(leftValue).dot(forceVector(rightValue)));
+		} else if (leftValue instanceof IntValue && isVector(rightValue))
+			return new LazyVector(leftValue.toInt(), rightValue, null, length(rightValue));
+		else if (isVector(leftValue) && rightValue instanceof IntValue)
+			return new LazyVector(rightValue.toInt(), leftValue, null, length(leftValue));
+		throw new InterpreterException("Type mismatch MUL");
+	}
+
+	// all the other nodes are evaluated by 'Execute'
+
+	@Override
+	public Value visitAssignStmt(Variable var, Exp exp) {
+		return execute.visitAssignStmt(var, exp);
+	}
+
+	@Override
+	public Value visitIntLiteral(IntValue value) {
+		return execute.visitIntLiteral(value);
+	}
+
+	@Override
+	public Value visitEq(Exp left, Exp right) {
+		return execute.visitEq(left, right);
+	}
+
+	@Override
+	public Value visitPrintStmt(Exp exp) {
+		return execute.visitPrintStmt(exp);
+	}
+
+	@Override
+	public Value visitMyLangProg(StmtSeq stmtSeq) {
+		return execute.visitMyLangProg(stmtSeq);
+	}
+
+	@Override
+	public Value visitSign(Exp exp) {
+		return execute.visitSign(exp);
+	}
+
+	@Override
+	public Value visitVariable(Variable var) {
+		return execute.visitVariable(var);
+	}
+
+	@Override
+	public Value visitVarStmt(Variable var, Exp exp) {
+		return execute.visitVarStmt(var, exp);
+	}
+
+	@Override
+	public Value visitNot(Exp exp) {
+		return execute.visitNot(exp);
+	}
+
+	@Override
+	public Value visitAnd(Exp left, Exp right) {
+		return execute.visitAnd(left, right);
+	}
+
+	@Override
+	public Value visitBoolLiteral(boolean value) {
+		return execute.visitBoolLiteral(value);
+	}
+
+	@Override
+	public Value visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		return execute.visitIfStmt(exp, thenBlock, elseBlock);
+	}
+
+	@Override
+	public Value visitBlock(StmtSeq stmtSeq) {
+		return execute.visitBlock(stmtSeq);
+	}
+
+	@Override
+	public Value visitStmtList(List<Stmt> stmts) {
+		return execute.visitStmtList(stmts);
+	}
+
+	@Override
+	public Value visitPairLit(Exp left, Exp right) {
+		return execute.visitPairLit(left, right);
+	}
+
+	@Override
+	public Value visitFst(Exp exp) {
+		return execute.visitFst(exp);
+	}
+
+	@Override
+	public Value visitSnd(Exp exp) {
+		return execute.visitSnd(exp);
+	}
+
+	@Override
+	public Value visitForeach(Variable var, Exp exp, Block thenBlock) {
+		return execute.visitForeach(var, exp, thenBlock);
+	}
+
+	@Override
+	public Value visitVector(Exp exp1, Exp exp2) {
+		return execute.visitVector(exp1, exp2);
+	}
+}
@@ -1,31 +1,78 @@
 package progetto.visitors.execution;
 
 import static java.util.Objects.requireNonNull;
+import static progetto.visitors.execution.IntKernels.KERNELS;
 
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
 
+/*
+ * vector of integers, in one of three representations:
+ * - dense: 'vect' contains all the elements;
+ * - dense off the heap: 'offHeap' contains all the elements, used for dense vectors with at least
+ *   'offHeapLength' elements;
+ * - sparse: 'vect' and 'offHeap' are null, 'indices' contains the indices of the non zero elements in
+ *   increasing order and 'values' their values, all non zero
+ * vectors built from literals are sparse, so they use memory proportional to the number of non zero elements;
+ * operations produce a sparse vector if both operands are sparse, which becomes dense when more than one
+ * element every DENSE_RATIO is non zero
+ */
 public class VectorValue implements Value {
-    private final IntValue[] vect;
+    private static final int DENSE_RATIO = 4;
+    private static final int[] EMPTY = new int[0];
+
+    private static int offHeapLength = 1 << 24; // 64MB
+
+    private final int length;
+    private int[] vect; // null if the vector is sparse or off the heap
+    private OffHeapInts offHeap; // null if the vector is sparse or on the heap
+    private int[] indices;
+    private int[] values;
+    private int hash; // computed by hashCode, valid if 'hashed'
+    private boolean hashed;
+    private boolean compared; // true if the vector has already been compared by equals
 
     public VectorValue(Value dim) {
         sanityCheckDim(dim);
-        this.vect = new IntValue[dim.toInt()];
-        for (int i = 0; i < dim.toInt(); i++) {
-            vect[i] = new IntValue(0);
-        }
+        this.length = dim.toInt();
+        this.indices = EMPTY;
+        this.values = EMPTY;
     }
 
     public VectorValue(Value index, Value dim) {
         sanityCheckIndex(index, dim);
-        this.vect = new IntValue[dim.toInt()];
-        for (int i = 0; i < dim.toInt(); i++) {
-            vect[i] = new IntValue(0);
+        this.length = dim.toInt();
+        this.indices = new int[] { index.toInt() };
+        this.values = new int[] { 1 };
+        if (isDense(1))
+            densify();
+    }
+
+    // the array is copied off the heap if it is too long
+    public VectorValue(int[] vect) {
+        this.length = requireNonNull(vect).length;
+        if (!isOffHeap(length)) {
+            this.vect = vect;
+            return;
         }
-        this.vect[index.toInt()] = new IntValue(1);
+        this.offHeap = new OffHeapInts(length);
+        for (int i = 0; i < length; i++)
+            offHeap.set(i, vect[i]);
     }
 
-    public VectorValue(IntValue[] vect) {
-        this.vect = requireNonNull(vect);
+    private VectorValue(OffHeapInts offHeap) {
+        this.offHeap = offHeap;
+        this.length = offHeap.length();
+    }
+
+    // sparse vector with the first 'count' elements of 'indices' and 'values', or dense if too full
+    private VectorValue(int length, int[] indices, int[] values, int count) {
+        this.length = length;
+        this.indices = count == indices.length ? indices : Arrays.copyOf(indices, count);
+        this.values = count == values.length ? values : Arrays.copyOf(values, count);
+        if (isDense(count))
+            densify();
     }
 
     private void sanityCheckDim(Value dim) {
@@ -53,16 +100,227 @@ public class VectorValue implements Value {
         }
     }
 
-    public IntValue get(int index) {
-        return this.vect[index];
+    // true if a vector with 'count' non zero elements must be dense
+    private boolean isDense(int count) {
+        return (long) count * DENSE_RATIO > length;
+    }
+
+    // dense vectors with at least 'length' elements are stored off the heap, to be called before execution
+    public static void offHeapFrom(int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Invalid minimum length of off-heap vectors " + length);
+        offHeapLength = length;
     }
 
-    public void set(int index, IntValue value) {
-        this.vect[index] = value;
+    // true if dense vectors of dimension 'length' are stored off the heap
+    static boolean isOffHeap(int length) {
+        return length >= offHeapLength;
+    }
+
+    // operations on long vectors use 'threads' threads, 1 to run them sequentially; to be called before execution
+    public static void parallelism(int threads) {
+        ParallelRanges.setParallelism(threads);
+    }
+
+    // operations on vectors with at least 'length' elements run in parallel; to be called before execution
+    public static void parallelFrom(int length) {
+        ParallelRanges.setMinLength(length);
+    }
+
+    // dense vector of zeros of dimension 'length'
+    static VectorValue zeros(int length) {
+        return isOffHeap(length) ? new VectorValue(new OffHeapInts(length)) : new VectorValue(new int[length]);
+    }
+
+    // switches to the dense representation
+    private void densify() {
+        if (isOffHeap(length)) {
+            offHeap = new OffHeapInts(length);
+            for (int k = 0; k < indices.length; k++)
+                offHeap.set(indices[k], values[k]);
+        } else {
+            vect = new int[length];
+            for (int k = 0; k < indices.length; k++)
+                vect[indices[k]] = values[k];
+        }
+        indices = null;
+        values = null;
+    }
+
+    public boolean isSparse() {
+        return vect == null && offHeap == null;
+    }
+
+    // the elements of a dense vector on the heap, not copied, null otherwise
+    int[] elements() {
+        return vect;
+    }
+
+    // element at 'index' of a dense vector
+    private int denseGet(int index) {
+        return vect != null ? vect[index] : offHeap.get(index);
+    }
+
+    // adds 'value' to the element at 'index' of a dense vector
+    private void denseAdd(int index, int value) {
+        if (vect != null)
+            vect[index] += value;
+        else
+            offHeap.add(index, value);
+    }
+
+    // adds the elements multiplied by 'factor' to those of 'result', dense and of the same dimension
+    void addScaledTo(VectorValue result, int factor) {
+        if (isSparse())
+            for (int k = 0; k < indices.length; k++)
+                result.denseAdd(indices[k], factor * values[k]);
+        else if (vect != null && result.vect != null)
+            ParallelRanges.forEach(length, (from, to) -> KERNELS.addScaled(factor, vect, result.vect, from, to));
+        else if (offHeap != null && result.offHeap != null)
+            result.offHeap.addScaled(factor, offHeap);
+        else
+            for (int i = 0; i < length; i++)
+                result.denseAdd(i, factor * denseGet(i));
+    }
+
+    public int get(int index) {
+        if (!isSparse())
+            return denseGet(Objects.checkIndex(index, length));
+        final var k = Arrays.binarySearch(indices, Objects.checkIndex(index, length));
+        return k < 0 ? 0 : values[k];
+    }
+
+    public void set(int index, int value) {
+        hashed = false;
+        if (isSparse())
+            densify();
+        if (vect != null)
+            this.vect[index] = value;
+        else
+            offHeap.set(Objects.checkIndex(index, length), value);
     }
 
     public IntValue size() {
-        return new IntValue(vect.length);
+        return IntValue.of(length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // runs 'action' on each element, in order, including the zeros not stored by sparse vectors
+    public void forEach(IntConsumer action) {
+        if (vect != null) {
+            for (int i = 0; i < length; i++)
+                action.accept(vect[i]);
+            return;
+        }
+        if (offHeap != null) {
+            offHeap.forEach(action);
+            return;
+        }
+        for (int i = 0, k = 0; i < length; i++)
+            action.accept(k < indices.length && indices[k] == i ? values[k++] : 0);
+    }
+
+    // element-wise sum, the vectors must have the same dimension
+    public VectorValue add(VectorValue other) {
+        if (isSparse() && other.isSparse())
+            return addSparse(other);
+        if (isSparse())
+            return other.add(this);
+        if (vect != null && other.vect != null) {
+            final var result = new int[length];
+            ParallelRanges.forEach(length, (from, to) -> KERNELS.add(vect, other.vect, result, from, to));
+            return new VectorValue(result);
+        }
+        if (vect != null && other.isSparse()) {
+            final var result = vect.clone();
+            for (int k = 0; k < other.indices.length; k++)
+                result[other.indices[k]] += other.values[k];
+            return new VectorValue(result);
+        }
+        final var result = zeros(length);
+        addScaledTo(result, 1);
+        other.addScaledTo(result, 1);
+        return result;
+    }
+
+    // sum of two sparse vectors, by merging the indices; elements summing to zero are not stored
+    private VectorValue addSparse(VectorValue other) {
+        final var resultIndices = new int[indices.length + other.indices.length];
+        final var resultValues = new int[resultIndices.length];
+        int count = 0, k = 0, h = 0;
+        while (k < indices.length || h < other.indices.length) {
+            final int index, value;
+            if (h == other.indices.length || k < indices.length && indices[k] < other.indices[h]) {
+                index = indices[k];
+                value = values[k++];
+            } else if (k == indices.length || other.indices[h] < indices[k]) {
+                index = other.indices[h];
+                value = other.values[h++];
+            } else {
+                index = indices[k];
+                value = values[k++] + other.values[h++];
+            }
+            if (value != 0) {
+                resultIndices[count] = index;
+                resultValues[count++] = value;
+            }
+        }
+        return new VectorValue(length, resultIndices, resultValues, count);
+    }
+
+    // dot product, the vectors must have the same dimension
+    public int dot(VectorValue other) {
+        if (vect != null && other.vect != null)
+            return ParallelRanges.sum(length, (from, to) -> KERNELS.dot(vect, other.vect, from, to));
+        if (offHeap != null && other.offHeap != null)
+            return offHeap.dot(other.offHeap);
+        int result = 0;
+        if (!isSparse() && !other.isSparse()) {
+            for (int i = 0; i < length; i++)
+                result += denseGet(i) * other.denseGet(i);
+        } else if (isSparse() && other.isSparse()) {
+            for (int k = 0, h = 0; k < indices.length && h < other.indices.length;)
+                if (indices[k] < other.indices[h])
+                    k++;
+                else if (indices[k] > other.indices[h])
+                    h++;
+                else
+                    result += values[k++] * other.values[h++];
+        } else {
+            final var sparse = isSparse() ? this : other;
+            final var dense = isSparse() ? other : this;
+            for (int k = 0; k < sparse.indices.length; k++)
+                result += sparse.values[k] * dense.denseGet(sparse.indices[k]);
+        }
+        return result;
+    }
+
+    // product by the scalar 'factor'
+    public VectorValue scale(int factor) {
+        if (isSparse()) {
+            final var resultIndices = new int[indices.length];
+            final var resultValues = new int[indices.length];
+            int count = 0;
+            for (int k = 0; k < indices.length; k++) {
+                final var value = factor * values[k];
+                if (value != 0) { // also after overflow
+                    resultIndices[count] = indices[k];
+                    resultValues[count++] = value;
+                }
+            }
+            return new VectorValue(length, resultIndices, resultValues, count);
+        }
+        if (vect != null) {
+            final var result = new int[length];
+            ParallelRanges.forEach(length, (from, to) -> KERNELS.scale(factor, vect, result, from, to));
+            return new VectorValue(result);
+        }
+        final var result = zeros(length);
+        addScaledTo(result, factor);
+        return result;
     }
 
     @Override
@@ -74,26 +332,81 @@ public class VectorValue implements Value {
     public final boolean equals(Object obj) {
         if (this == obj)
             return true;
-        if (obj instanceof VectorValue vt)
-            return Arrays.equals(vect, vt.vect);
-        return false;
+        if (!(obj instanceof VectorValue vt) || length != vt.length || hashesDiffer(vt))
+            return false;
+        if (vect != null && vt.vect != null)
+            return ParallelRanges.all(length, (from, to) -> KERNELS.equals(vect, vt.vect, from, to));
+        if (offHeap != null && vt.offHeap != null)
+            return offHeap.equals(vt.offHeap);
+        if (isSparse() && vt.isSparse())
+            return Arrays.equals(indices, vt.indices) && Arrays.equals(values, vt.values);
+        if (!isSparse() && !vt.isSparse()) {
+            for (int i = 0; i < length; i++)
+                if (denseGet(i) != vt.denseGet(i))
+                    return false;
+            return true;
+        }
+        final var sparse = isSparse() ? this : vt;
+        final var dense = isSparse() ? vt : this;
+        for (int i = 0, k = 0; i < length; i++)
+            if (dense.denseGet(i) != (k < sparse.indices.length && sparse.indices[k] == i ? sparse.values[k++] : 0))
+                return false;
+        return true;
+    }
+
+    /*
+     * true if the hash codes of the two vectors differ, hence the vectors too; the codes are computed from the
+     * second comparison of each vector, so a vector compared many times, for instance in a loop, is told apart
+     * from the others in constant time, while the first comparison does not pay for computing the code
+     */
+    private boolean hashesDiffer(VectorValue other) {
+        final var known = (hashed || compared) && (other.hashed || other.compared);
+        compared = other.compared = true;
+        return known && hashCode() != other.hashCode();
     }
 
+    /*
+     * equal to Arrays.hashCode of the elements in all representations, that is 31^n + sum of a[i]*31^(n-1-i)
+     * modulo 2^32; for sparse vectors only the terms of the non zero elements are summed, for dense ones the
+     * sums of the terms of ranges of indices are computed in parallel; the code is computed only once, on the
+     * first call
+     */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(vect);
+        if (!hashed) {
+            hash = computeHash();
+            hashed = true;
+        }
+        return hash;
+    }
+
+    private int computeHash() {
+        if (vect != null)
+            return pow31(length) + ParallelRanges.sum(length, (from, to) -> {
+                int terms = 0;
+                for (int i = from; i < to; i++)
+                    terms = 31 * terms + vect[i];
+                return terms * pow31(length - to);
+            });
+        if (offHeap != null)
+            return offHeap.hashCode();
+        var hash = pow31(length);
+        for (int k = 0; k < indices.length; k++)
+            hash += values[k] * pow31(length - 1 - indices[k]);
+        return hash;
+    }
+
+    // 31^exp modulo 2^32
+    static int pow31(int exp) {
+        int result = 1, base = 31;
+        for (; exp > 0; exp >>= 1, base *= base)
+            if ((exp & 1) != 0)
+                result *= base;
+        return result;
     }
 
     @Override
     public String toString() {
-        String s = "[";
-        for (int i = 0; i < vect.length; i++) {
-            s += vect[i].toString();
-            if (i != vect.length - 1) {
-                s += ";";
-            }
-        }
-        s += "]";
-        return s;
+        return ValuePrinter.toString(this);
     }
 }
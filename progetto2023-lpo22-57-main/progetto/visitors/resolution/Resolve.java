@@ -0,0 +1,200 @@
+package progetto.visitors.resolution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import progetto.parser.ast.*;
+import progetto.visitors.Visitor;
+import progetto.visitors.execution.IntValue;
+
+/*
+ * static resolution of variables: returns a copy of a program where each occurrence of a variable is a new
+ * 'ResolvedVariable' with the depth and slot of its declaration, to be executed with a 'FrameEnvironment'
+ *
+ * scopes are those of 'Typecheck' and 'Execute': a program and each block have their own scope, a 'foreach'
+ * statement has a scope for its variable enclosing the one of its block, and statements are resolved in order,
+ * hence a variable is resolved to the declaration that 'GenEnvironment' would find at run time
+ * occurrences of undeclared variables and variables declared twice in the same scope are left as plain variables,
+ * so that the corresponding errors are still raised at run time
+ */
+
+public class Resolve implements Visitor<AST> {
+
+	private final ArrayList<HashMap<String, Integer>> scopes = new ArrayList<>(); // slots of the declared variables
+
+	private Resolve() {
+		scopes.add(new HashMap<>());
+	}
+
+	// returns the resolved copy of 'prog'
+	public static Prog resolve(Prog prog) {
+		return (Prog) prog.accept(new Resolve());
+	}
+
+	private Variable use(Variable var) {
+		final var name = var.getName();
+		for (var i = scopes.size() - 1; i >= 0; i--) {
+			final var slot = scopes.get(i).get(name);
+			if (slot != null)
+				return new ResolvedVariable(name, var.getId(), scopes.size() - 1 - i, slot);
+		}
+		return new Variable(name, var.getId());
+	}
+
+	private Variable dec(Variable var) {
+		final var name = var.getName();
+		final var scope = scopes.get(scopes.size() - 1);
+		if (scope.containsKey(name))
+			return new Variable(name, var.getId());
+		final var slot = scope.size();
+		scope.put(name, slot);
+		return new ResolvedVariable(name, var.getId(), 0, slot);
+	}
+
+	private Exp exp(Exp exp) {
+		return (Exp) exp.accept(this);
+	}
+
+	private StmtSeq stmtSeq(StmtSeq stmtSeq) {
+		return (StmtSeq) stmtSeq.accept(this);
+	}
+
+	private Block block(Block block) {
+		return (Block) block.accept(this);
+	}
+
+	// programs
+
+	@Override
+	public Prog visitMyLangProg(StmtSeq stmtSeq) {
+		return new MyLangProg(stmtSeq(stmtSeq));
+	}
+
+	// statements; the expression is resolved before the declared variable
+
+	@Override
+	public Stmt visitAssignStmt(Variable var, Exp exp) {
+		final var resolvedExp = exp(exp);
+		return new AssignStmt(use(var), resolvedExp);
+	}
+
+	@Override
+	public Stmt visitPrintStmt(Exp exp) {
+		return new PrintStmt(exp(exp));
+	}
+
+	@Override
+	public Stmt visitVarStmt(Variable var, Exp exp) {
+		final var resolvedExp = exp(exp);
+		return new VarStmt(dec(var), resolvedExp);
+	}
+
+	@Override
+	public Stmt visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		final var resolvedExp = exp(exp);
+		final var resolvedThen = block(thenBlock);
+		return new IfStmt(resolvedExp, resolvedThen, elseBlock == null ? null : block(elseBlock));
+	}
+
+	@Override
+	public Stmt visitForeach(Variable var, Exp exp, Block thenBlock) {
+		final var resolvedExp = exp(exp);
+		scopes.add(new HashMap<>());
+		final var resolvedVar = dec(var);
+		final var resolvedBlock = block(thenBlock);
+		scopes.remove(scopes.size() - 1);
+		return new Foreach(resolvedVar, resolvedExp, resolvedBlock);
+	}
+
+	@Override
+	public Block visitBlock(StmtSeq stmtSeq) {
+		scopes.add(new HashMap<>());
+		final var resolved = stmtSeq(stmtSeq);
+		scopes.remove(scopes.size() - 1);
+		return new Block(resolved);
+	}
+
+	// sequences of statements
+
+	@Override
+	public StmtSeq visitStmtList(List<Stmt> stmts) {
+		final var resolved = new ArrayList<Stmt>(stmts.size());
+		for (var stmt : stmts)
+			resolved.add((Stmt) stmt.accept(this));
+		return new StmtList(resolved);
+	}
+
+	// expressions
+
+	@Override
+	public Exp visitAdd(Exp left, Exp right) {
+		final var resolvedLeft = exp(left);
+		return new Add(resolvedLeft, exp(right));
+	}
+
+	@Override
+	public Exp visitMul(Exp left, Exp right) {
+		final var resolvedLeft = exp(left);
+		return new Mul(resolvedLeft, exp(right));
+	}
+
+	@Override
+	public Exp visitAnd(Exp left, Exp right) {
+		final var resolvedLeft = exp(left);
+		return new And(resolvedLeft, exp(right));
+	}
+
+	@Override
+	public Exp visitEq(Exp left, Exp right) {
+		final var resolvedLeft = exp(left);
+		return new Eq(resolvedLeft, exp(right));
+	}
+
+	@Override
+	public Exp visitPairLit(Exp left, Exp right) {
+		final var resolvedLeft = exp(left);
+		return new PairLit(resolvedLeft, exp(right));
+	}
+
+	@Override
+	public Exp visitVector(Exp exp1, Exp exp2) {
+		final var resolvedExp1 = exp(exp1);
+		return new Vector(resolvedExp1, exp(exp2));
+	}
+
+	@Override
+	public Exp visitSign(Exp exp) {
+		return new Sign(exp(exp));
+	}
+
+	@Override
+	public Exp visitNot(Exp exp) {
+		return new Not(exp(exp));
+	}
+
+	@Override
+	public Exp visitFst(Exp exp) {
+		return new Fst(exp(exp));
+	}
+
+	@Override
+	public Exp visitSnd(Exp exp) {
+		return new Snd(exp(exp));
+	}
+
+	@Override
+	public Exp visitIntLiteral(IntValue value) {
+		return new IntLiteral(value);
+	}
+
+	@Override
+	public Exp visitBoolLiteral(boolean value) {
+		return new BoolLiteral(value);
+	}
+
+	@Override
+	public Exp visitVariable(Variable var) {
+		return use(var);
+	}
+}
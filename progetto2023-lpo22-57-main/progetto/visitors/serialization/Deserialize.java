@@ -0,0 +1,163 @@
+package progetto.visitors.serialization;
+
+import static progetto.visitors.serialization.Serialize.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+
+import progetto.parser.ast.Add;
+import progetto.parser.ast.And;
+import progetto.parser.ast.AssignStmt;
+import progetto.parser.ast.Block;
+import progetto.parser.ast.BoolLiteral;
+import progetto.parser.ast.Eq;
+import progetto.parser.ast.Exp;
+import progetto.parser.ast.Foreach;
+import progetto.parser.ast.Fst;
+import progetto.parser.ast.IfStmt;
+import progetto.parser.ast.IntLiteral;
+import progetto.parser.ast.Mul;
+import progetto.parser.ast.MyLangProg;
+import progetto.parser.ast.Not;
+import progetto.parser.ast.PairLit;
+import progetto.parser.ast.PrintStmt;
+import progetto.parser.ast.Prog;
+import progetto.parser.ast.Sign;
+import progetto.parser.ast.Snd;
+import progetto.parser.ast.Stmt;
+import progetto.parser.ast.StmtList;
+import progetto.parser.ast.StmtSeq;
+import progetto.parser.ast.Variable;
+import progetto.parser.ast.VarStmt;
+import progetto.parser.ast.Vector;
+
+/*
+ * reads back the programs serialized by 'Serialize'; malformed data are reported with a StreamCorruptedException,
+ * or an EOFException if they are truncated
+ */
+
+public class Deserialize {
+
+	private final DataInputStream in;
+	private final ArrayList<Variable> vars = new ArrayList<>(); // variables in order of first occurrence, by id
+
+	private Deserialize(byte[] data) {
+		in = new DataInputStream(new ByteArrayInputStream(data));
+	}
+
+	// returns the program serialized in 'data', which must be entirely consumed
+	public static Prog deserialize(byte[] data) throws IOException {
+		var reader = new Deserialize(data);
+		reader.expect(MY_LANG_PROG);
+		var prog = new MyLangProg(reader.readStmtSeq());
+		if (reader.in.available() > 0)
+			throw new StreamCorruptedException("Trailing data after program");
+		return prog;
+	}
+
+	private void expect(byte tag) throws IOException {
+		var found = in.readByte();
+		if (found != tag)
+			throw new StreamCorruptedException("Expecting tag " + tag + ", found " + found);
+	}
+
+	private boolean readFlag() throws IOException {
+		var flag = in.readByte();
+		if (flag != 0 && flag != 1)
+			throw new StreamCorruptedException("Invalid flag " + flag);
+		return flag == 1;
+	}
+
+	// the size is not trusted, the list grows as statements are actually read
+	private StmtSeq readStmtSeq() throws IOException {
+		expect(STMT_LIST);
+		var size = in.readInt();
+		if (size < 0)
+			throw new StreamCorruptedException("Invalid size " + size);
+		var stmts = new ArrayList<Stmt>();
+		for (var i = 0; i < size; i++)
+			stmts.add(readStmt());
+		return new StmtList(stmts);
+	}
+
+	private Block readBlock() throws IOException {
+		expect(BLOCK);
+		return new Block(readStmtSeq());
+	}
+
+	private Variable readVariable() throws IOException {
+		expect(VARIABLE);
+		return readName();
+	}
+
+	// a new name has index equal to the number of names read so far and is followed by its characters
+	private Variable readName() throws IOException {
+		var index = in.readInt();
+		if (index == vars.size())
+			vars.add(new Variable(in.readUTF(), index));
+		else if (index < 0 || index > vars.size())
+			throw new StreamCorruptedException("Invalid variable index " + index);
+		return vars.get(index);
+	}
+
+	private Stmt readStmt() throws IOException {
+		var tag = in.readByte();
+		switch (tag) {
+		case ASSIGN_STMT:
+			return new AssignStmt(readVariable(), readExp());
+		case VAR_STMT:
+			return new VarStmt(readVariable(), readExp());
+		case PRINT_STMT:
+			return new PrintStmt(readExp());
+		case IF_STMT: {
+			var exp = readExp();
+			var thenBlock = readBlock();
+			return new IfStmt(exp, thenBlock, readFlag() ? readBlock() : null);
+		}
+		case FOREACH:
+			return new Foreach(readVariable(), readExp(), readBlock());
+		case BLOCK:
+			return new Block(readStmtSeq());
+		default:
+			throw new StreamCorruptedException("Unexpected statement tag " + tag);
+		}
+	}
+
+	// operands are read in order, since Java evaluates arguments from left to right
+	private Exp readExp() throws IOException {
+		var tag = in.readByte();
+		switch (tag) {
+		case ADD:
+			return new Add(readExp(), readExp());
+		case MUL:
+			return new Mul(readExp(), readExp());
+		case AND:
+			return new And(readExp(), readExp());
+		case EQ:
+			return new Eq(readExp(), readExp());
+		case PAIR_LIT:
+			return new PairLit(readExp(), readExp());
+		case VECTOR:
+			return new Vector(readExp(), readExp());
+		case SIGN:
+			return new Sign(readExp());
+		case NOT:
+			return new Not(readExp());
+		case FST:
+			return new Fst(readExp());
+		case SND:
+			return new Snd(readExp());
+		case INT_LITERAL:
+			return new IntLiteral(in.readInt());
+		case BOOL_LITERAL:
+			return new BoolLiteral(readFlag());
+		case VARIABLE:
+			return readName();
+		default:
+			throw new StreamCorruptedException("Unexpected expression tag " + tag);
+		}
+	}
+}
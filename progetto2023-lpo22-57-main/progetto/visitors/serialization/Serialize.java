@@ -0,0 +1,264 @@
+package progetto.visitors.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import progetto.parser.ast.Block;
+import progetto.parser.ast.Exp;
+import progetto.parser.ast.Prog;
+import progetto.parser.ast.Stmt;
+import progetto.parser.ast.StmtSeq;
+import progetto.parser.ast.Variable;
+import progetto.visitors.Visitor;
+import progetto.visitors.execution.IntValue;
+
+/*
+ * compact binary serialization of programs, read back by 'Deserialize'
+ *
+ * nodes are written in preorder as a one byte tag followed by their children; integer literals and sizes are
+ * written as 4 byte integers, variable names are written only at their first occurrence and then referred to by
+ * their index in order of first occurrence
+ */
+
+public class Serialize implements Visitor<Void> {
+
+	// node tags
+	static final byte MY_LANG_PROG = 1;
+	static final byte STMT_LIST = 2;
+	static final byte ASSIGN_STMT = 3;
+	static final byte VAR_STMT = 4;
+	static final byte PRINT_STMT = 5;
+	static final byte IF_STMT = 6;
+	static final byte FOREACH = 7;
+	static final byte BLOCK = 8;
+	static final byte ADD = 9;
+	static final byte MUL = 10;
+	static final byte AND = 11;
+	static final byte EQ = 12;
+	static final byte PAIR_LIT = 13;
+	static final byte VECTOR = 14;
+	static final byte SIGN = 15;
+	static final byte NOT = 16;
+	static final byte FST = 17;
+	static final byte SND = 18;
+	static final byte INT_LITERAL = 19;
+	static final byte BOOL_LITERAL = 20;
+	static final byte VARIABLE = 21;
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private final DataOutputStream out = new DataOutputStream(bytes);
+	private final Map<String, Integer> names = new HashMap<>(); // indexes of the names already written
+
+	// returns the serialization of 'prog'
+	public static byte[] serialize(Prog prog) {
+		var visitor = new Serialize();
+		prog.accept(visitor);
+		return visitor.bytes.toByteArray();
+	}
+
+	private Serialize() {
+	}
+
+	// writes on a byte array, hence no I/O error can actually occur
+	private void write(int tag, int value) {
+		try {
+			out.writeByte(tag);
+			out.writeInt(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void write(int tag) {
+		try {
+			out.writeByte(tag);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeBinOp(byte tag, Exp left, Exp right) {
+		write(tag);
+		left.accept(this);
+		right.accept(this);
+	}
+
+	private void writeUnOp(byte tag, Exp exp) {
+		write(tag);
+		exp.accept(this);
+	}
+
+	// a new name is written with index equal to the number of names written so far, followed by its characters
+	private void writeName(Variable var) {
+		var name = var.getName();
+		var index = names.get(name);
+		if (index != null) {
+			write(VARIABLE, index);
+			return;
+		}
+		write(VARIABLE, names.size());
+		names.put(name, names.size());
+		try {
+			out.writeUTF(name);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// programs
+
+	@Override
+	public Void visitMyLangProg(StmtSeq stmtSeq) {
+		write(MY_LANG_PROG);
+		stmtSeq.accept(this);
+		return null;
+	}
+
+	// statements
+
+	@Override
+	public Void visitAssignStmt(Variable var, Exp exp) {
+		write(ASSIGN_STMT);
+		writeName(var);
+		exp.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Exp exp) {
+		writeUnOp(PRINT_STMT, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Variable var, Exp exp) {
+		write(VAR_STMT);
+		writeName(var);
+		exp.accept(this);
+		return null;
+	}
+
+	// the optional else branch is preceded by its presence flag
+	@Override
+	public Void visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		write(IF_STMT);
+		exp.accept(this);
+		thenBlock.accept(this);
+		write(elseBlock == null ? 0 : 1);
+		if (elseBlock != null)
+			elseBlock.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitForeach(Variable var, Exp exp, Block thenBlock) {
+		write(FOREACH);
+		writeName(var);
+		exp.accept(this);
+		thenBlock.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitBlock(StmtSeq stmtSeq) {
+		write(BLOCK);
+		stmtSeq.accept(this);
+		return null;
+	}
+
+	// sequences of statements
+
+	@Override
+	public Void visitStmtList(List<Stmt> stmts) {
+		write(STMT_LIST, stmts.size());
+		for (var stmt : stmts)
+			stmt.accept(this);
+		return null;
+	}
+
+	// expressions
+
+	@Override
+	public Void visitAdd(Exp left, Exp right) {
+		writeBinOp(ADD, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitMul(Exp left, Exp right) {
+		writeBinOp(MUL, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitAnd(Exp left, Exp right) {
+		writeBinOp(AND, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitEq(Exp left, Exp right) {
+		writeBinOp(EQ, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitPairLit(Exp left, Exp right) {
+		writeBinOp(PAIR_LIT, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitVector(Exp exp1, Exp exp2) {
+		writeBinOp(VECTOR, exp1, exp2);
+		return null;
+	}
+
+	@Override
+	public Void visitSign(Exp exp) {
+		writeUnOp(SIGN, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitNot(Exp exp) {
+		writeUnOp(NOT, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitFst(Exp exp) {
+		writeUnOp(FST, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitSnd(Exp exp) {
+		writeUnOp(SND, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitIntLiteral(IntValue value) {
+		write(INT_LITERAL, value.toInt());
+		return null;
+	}
+
+	@Override
+	public Void visitBoolLiteral(boolean value) {
+		write(BOOL_LITERAL);
+		write(value ? 1 : 0);
+		return null;
+	}
+
+	@Override
+	public Void visitVariable(Variable var) {
+		writeName(var);
+		return null;
+	}
+}
@@ -0,0 +1,155 @@
+package progetto.visitors.typechecking;
+
+import static java.util.Objects.requireNonNull;
+import static progetto.parser.ast.LinearProg.*;
+import static progetto.visitors.typechecking.AtomicType.BOOL;
+import static progetto.visitors.typechecking.AtomicType.INT;
+import static progetto.visitors.typechecking.AtomicType.VECTOR; // the type, not the opcode of 'LinearProg'
+
+import java.util.Arrays;
+
+import progetto.environments.Environment;
+import progetto.environments.EnvironmentException;
+import progetto.parser.ast.LinearProg;
+
+/*
+ * static semantics of a 'LinearProg', checked by walking its arrays by node index, without the views which
+ * 'LinearProg.accept' builds to be visited by 'Typecheck'; the errors are the same as for 'Typecheck', and are
+ * found in the same order
+ */
+public class LinearTypecheck {
+
+	private final LinearProg prog;
+	private final Environment<Type> env;
+	private int[] stmts = new int[64]; // the statements of the sequences being checked, in order
+	private int top; // number of elements of 'stmts' in use
+
+	public LinearTypecheck(LinearProg prog, Environment<Type> env) {
+		this.prog = requireNonNull(prog);
+		this.env = requireNonNull(env);
+	}
+
+	public void typecheck() {
+		try {
+			stmtList(prog.last(prog.root()));
+		} catch (EnvironmentException e) { // undeclared variable
+			throw new TypecheckerException(e);
+		}
+	}
+
+	// checks the statements of a STMT_LIST node; its children can only be found from the last one backwards
+	private void stmtList(int node) {
+		final var count = prog.operand(node);
+		final var start = top;
+		if (start + count > stmts.length)
+			stmts = Arrays.copyOf(stmts, Math.max(2 * stmts.length, start + count));
+		for (int child = prog.last(node), i = start + count - 1; i >= start; child = prog.previous(child), i--)
+			stmts[i] = child;
+		top = start + count;
+		for (var i = start; i < start + count; i++)
+			stmt(stmts[i]);
+		top = start;
+	}
+
+	private void stmt(int node) {
+		switch (prog.op(node)) {
+		case ASSIGN_STMT -> env.lookup(prog.name(node)).checkEqual(exp(prog.last(node)));
+		case VAR_STMT -> env.dec(prog.name(node), exp(prog.last(node)));
+		case PRINT_STMT -> exp(prog.last(node));
+		case IF_STMT -> ifStmt(node);
+		case FOREACH -> foreach(node);
+		default -> throw new AssertionError("Fatal error: invalid statement opcode " + prog.op(node));
+		}
+	}
+
+	private void ifStmt(int node) {
+		final var last = prog.last(node);
+		final var hasElse = prog.operand(node) != 0;
+		final var thenBlock = hasElse ? prog.previous(last) : last;
+		BOOL.checkEqual(exp(prog.previous(thenBlock)));
+		block(thenBlock);
+		if (hasElse)
+			block(last);
+	}
+
+	private void foreach(int node) { // PROGETTO
+		final var body = prog.last(node);
+		VECTOR.checkEqual(exp(prog.previous(body)));
+		env.enterScope();
+		env.dec(prog.name(node), INT);
+		block(body);
+		env.exitScope();
+	}
+
+	private void block(int node) {
+		env.enterScope();
+		stmtList(prog.last(node));
+		env.exitScope();
+	}
+
+	// the type of the expression 'node'; binary and unary operations are checked by separate methods
+	private Type exp(int node) {
+		return switch (prog.op(node)) {
+		case SIGN, NOT, FST, SND -> unOp(node);
+		case INT_LITERAL -> INT;
+		case BOOL_LITERAL -> BOOL;
+		case VARIABLE -> env.lookup(prog.name(node));
+		default -> binOp(node);
+		};
+	}
+
+	// the type of 'node', which must be INT or VECTOR, as in 'Typecheck.checkIntOrVect'
+	private Type intOrVector(int node) {
+		final var type = exp(node);
+		if (INT.equals(type) || VECTOR.equals(type))
+			return type;
+		throw new TypecheckerException(type.toString(), INT.toString() + " or " + VECTOR.toString());
+	}
+
+	private Type binOp(int node) {
+		final var right = prog.last(node);
+		final var left = prog.previous(right);
+		switch (prog.op(node)) {
+		case ADD: { // PROGETTO
+			final var type = intOrVector(left);
+			type.checkEqual(exp(right));
+			return type == INT ? INT : VECTOR;
+		}
+		case MUL: // PROGETTO
+			return intOrVector(left) != intOrVector(right) ? VECTOR : INT;
+		case AND:
+			BOOL.checkEqual(exp(left));
+			BOOL.checkEqual(exp(right));
+			return BOOL;
+		case EQ:
+			exp(left).checkEqual(exp(right));
+			return BOOL;
+		case PAIR_LIT:
+			return new PairType(exp(left), exp(right));
+		case LinearProg.VECTOR: // PROGETTO
+			INT.checkEqual(exp(left));
+			INT.checkEqual(exp(right));
+			return VECTOR;
+		default:
+			throw new AssertionError("Fatal error: invalid expression opcode " + prog.op(node));
+		}
+	}
+
+	private Type unOp(int node) {
+		final var type = exp(prog.last(node));
+		switch (prog.op(node)) {
+		case SIGN:
+			INT.checkEqual(type);
+			return INT;
+		case NOT:
+			BOOL.checkEqual(type);
+			return BOOL;
+		case FST:
+			return type.getFstPairType();
+		case SND:
+			return type.getSndPairType();
+		default:
+			throw new AssertionError("Fatal error: invalid expression opcode " + prog.op(node));
+		}
+	}
+}
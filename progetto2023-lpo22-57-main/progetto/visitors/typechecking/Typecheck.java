@@ -1,7 +1,11 @@
 package progetto.visitors.typechecking;
 
+import static java.util.Objects.requireNonNull;
 import static progetto.visitors.typechecking.AtomicType.*;
 
+import java.util.List;
+
+import progetto.environments.Environment;
 import progetto.environments.EnvironmentException;
 import progetto.environments.GenEnvironment;
 import progetto.parser.ast.Block;
@@ -10,10 +14,35 @@ import progetto.parser.ast.Stmt;
 import progetto.parser.ast.StmtSeq;
 import progetto.parser.ast.Variable;
 import progetto.visitors.Visitor;
+import progetto.visitors.execution.IntValue;
 
 public class Typecheck implements Visitor<Type> {
 
-	private final GenEnvironment<Type> env = new GenEnvironment<>();
+	private final Environment<Type> env;
+	private final List<TypecheckerException> errors; // static errors found so far when recovering, null otherwise
+
+	public Typecheck() {
+		this(new GenEnvironment<>());
+	}
+
+	public Typecheck(Environment<Type> env) {
+		this.env = requireNonNull(env);
+		errors = null;
+	}
+
+	/*
+	 * the typechecker recovers from static errors at statement boundaries: each error is added to 'errors' and
+	 * the remaining statements are checked; the variable of a 'var' statement with errors is not declared,
+	 * hence its uses are reported as undeclared
+	 */
+	public Typecheck(List<TypecheckerException> errors) {
+		this(new GenEnvironment<>(), errors);
+	}
+
+	public Typecheck(Environment<Type> env, List<TypecheckerException> errors) {
+		this.env = requireNonNull(env);
+		this.errors = requireNonNull(errors);
+	}
 
 	// useful to typecheck binary operations where operands must have the same type
 	private void checkBinOp(Exp left, Exp right, Type type) {
@@ -33,6 +62,18 @@ public class Typecheck implements Visitor<Type> {
 		return null;
 	}
 
+	/*
+	 * static semantics for a top-level statement, in the environment built by the previously checked ones;
+	 * used to typecheck programs one statement at a time
+	 */
+	public void typecheck(Stmt stmt) {
+		try {
+			stmt.accept(this);
+		} catch (EnvironmentException e) { // undeclared variable
+			throw new TypecheckerException(e);
+		}
+	}
+
 	// static semantics for statements; no value returned by the visitor
 
 	@Override
@@ -75,14 +116,18 @@ public class Typecheck implements Visitor<Type> {
 	// no value returned by the visitor
 
 	@Override
-	public Type visitEmptyStmtSeq() {
-		return null;
-	}
-
-	@Override
-	public Type visitNonEmptyStmtSeq(Stmt first, StmtSeq rest) {
-		first.accept(this);
-		rest.accept(this);
+	public Type visitStmtList(List<Stmt> stmts) {
+		for (var stmt : stmts)
+			if (errors == null)
+				stmt.accept(this);
+			else
+				try {
+					stmt.accept(this);
+				} catch (TypecheckerException e) {
+					errors.add(e);
+				} catch (EnvironmentException e) { // undeclared variable
+					errors.add(new TypecheckerException(e));
+				}
 		return null;
 	}
 
@@ -104,7 +149,7 @@ public class Typecheck implements Visitor<Type> {
 	}
 
 	@Override
-	public AtomicType visitIntLiteral(int value) {
+	public AtomicType visitIntLiteral(IntValue value) {
 		return INT;
 	}
 
@@ -6,6 +6,12 @@
 
 # Per eseguire lo script, aprire PowerShell e digitare: .\run_tests.ps1
 
+# Con l'opzione -Simd (.\run_tests.ps1 -Simd) viene compilato anche simd\progetto\visitors\execution\SimdIntKernels.java
+# e i test sono eseguiti con i kernel SIMD; sia javac sia java ricevono l'opzione --add-modules jdk.incubator.vector,
+# senza la quale il sorgente in simd non compila e il modulo non è disponibile a run time
+
+param([switch]$Simd)
+
 & Clear-Host
 
 Write-Host -ForegroundColor DarkMagenta "TEST AUTOMATICI PROGETTO LPO 2022/2023"
@@ -14,6 +20,8 @@ Write-Host ""
 $javaPath = "$env:JAVA_HOME\bin\java.exe" # Inserisci il percorso alla tua installazione di Java
 $javacPath = "$env:JAVA_HOME\bin\javac.exe" # Inserisci il percorso alla tua installazione di Javac
 $sourceFile = "progetto\Main.java"  # Inserisci il percorso al tuo file sorgente Java
+$simdSourceFile = "simd\progetto\visitors\execution\SimdIntKernels.java" # Sorgente compilato solo con -Simd
+$moduleOptions = if ($Simd) { "--add-modules", "jdk.incubator.vector" } else { @() }
 
 # Aggiungi i file di input
 $successInput = @(
@@ -44,6 +52,11 @@ Write-Host -ForegroundColor Yellow "Compiling $sourceFile..."
 # Compila il programma Java
 & $javacPath $sourceFile
 Write-Host -ForegroundColor Green "Compiled $sourceFile"
+if ($Simd) {
+    # Compila i kernel SIMD nelle stesse cartelle delle altre classi
+    & $javacPath $moduleOptions -cp . -d . $simdSourceFile
+    Write-Host -ForegroundColor Green "Compiled $simdSourceFile"
+}
 Write-Host ""
 Write-Host -ForegroundColor Magenta "---------------------------------"
 Write-Host ""
@@ -60,7 +73,7 @@ function RunJavaProgram($inputFile) {
     Write-Host ""
     $arguments = "-i", $inputFile
     $runCommand = "$classPath.$className"
-    & $javaPath $runCommand $arguments
+    & $javaPath $moduleOptions $runCommand $arguments
 }
 
 function RunJavaProgramNTC($inputFile) {
@@ -70,7 +83,7 @@ function RunJavaProgramNTC($inputFile) {
     Write-Host ""
     $arguments = "-i", $inputFile, "-ntc"
     $runCommand = "$classPath.$className"
-    & $javaPath $runCommand $arguments
+    & $javaPath $moduleOptions $runCommand $arguments
 }
 
 Write-Host -ForegroundColor Red "Running tests WITHOUT -NTC..."
@@ -149,5 +162,15 @@ for ($i = 0; $i -lt $failureSyInput.Length; $i++) {
     RunJavaProgramNTC $failureSyInput[$i]
 }
 
+Write-Host ""
+Write-Host -ForegroundColor Cyan "Running Java tests..."
+# Compila ed esegue i test Java nel folder test
+$testRoot = (Resolve-Path "test").Path
+foreach ($testFile in Get-ChildItem -Path $testRoot -Recurse -Filter "*Test.java") {
+    & $javacPath -cp . -d . $testFile.FullName
+    $testClass = [System.IO.Path]::GetRelativePath($testRoot, $testFile.FullName).Replace(".java", "").Replace("\", ".").Replace("/", ".")
+    & $javaPath $testClass
+}
+
 Write-Host ""
 Write-HOst -ForegroundColor Green "Done!"
\ No newline at end of file
@@ -0,0 +1,83 @@
+package progetto.visitors.execution;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * kernels using the widest SIMD registers of the processor; the elements which do not fill a register are
+ * processed by scalar loops; loaded by 'IntKernels' only if jdk.incubator.vector is available
+ *
+ * kept out of the main source folder, so that the rest of the tree builds without incubator modules; compile
+ * it after the main sources with
+ *   javac --add-modules jdk.incubator.vector -cp . simd/progetto/visitors/execution/SimdIntKernels.java -d .
+ * and run with java --add-modules jdk.incubator.vector progetto.Main ...
+ */
+final class SimdIntKernels extends IntKernels {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	void add(int[] left, int[] right, int[] result, int from, int to) {
+		final var bound = from + SPECIES.loopBound(to - from);
+		var i = from;
+		for (; i < bound; i += SPECIES.length())
+			IntVector.fromArray(SPECIES, left, i).add(IntVector.fromArray(SPECIES, right, i)).intoArray(result, i);
+		for (; i < to; i++)
+			result[i] = left[i] + right[i];
+	}
+
+	@Override
+	void scale(int factor, int[] elements, int[] result, int from, int to) {
+		final var bound = from + SPECIES.loopBound(to - from);
+		final var factors = IntVector.broadcast(SPECIES, factor);
+		var i = from;
+		for (; i < bound; i += SPECIES.length())
+			IntVector.fromArray(SPECIES, elements, i).mul(factors).intoArray(result, i);
+		for (; i < to; i++)
+			result[i] = factor * elements[i];
+	}
+
+	@Override
+	void addScaled(int factor, int[] elements, int[] result, int from, int to) {
+		final var bound = from + SPECIES.loopBound(to - from);
+		final var factors = IntVector.broadcast(SPECIES, factor);
+		var i = from;
+		for (; i < bound; i += SPECIES.length())
+			IntVector.fromArray(SPECIES, elements, i).mul(factors).add(IntVector.fromArray(SPECIES, result, i))
+					.intoArray(result, i);
+		for (; i < to; i++)
+			result[i] += factor * elements[i];
+	}
+
+	@Override
+	int dot(int[] left, int[] right, int from, int to) {
+		final var bound = from + SPECIES.loopBound(to - from);
+		var sums = IntVector.zero(SPECIES);
+		var i = from;
+		for (; i < bound; i += SPECIES.length())
+			sums = IntVector.fromArray(SPECIES, left, i).mul(IntVector.fromArray(SPECIES, right, i)).add(sums);
+		var result = sums.reduceLanes(VectorOperators.ADD);
+		for (; i < to; i++)
+			result += left[i] * right[i];
+		return result;
+	}
+
+	@Override
+	boolean equals(int[] left, int[] right, int from, int to) {
+		final var bound = from + SPECIES.loopBound(to - from);
+		var i = from;
+		for (; i < bound; i += SPECIES.length())
+			if (!IntVector.fromArray(SPECIES, left, i).eq(IntVector.fromArray(SPECIES, right, i)).allTrue())
+				return false;
+		for (; i < to; i++)
+			if (left[i] != right[i])
+				return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + SPECIES + ")";
+	}
+}
@@ -0,0 +1,150 @@
+package progetto.environments;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import progetto.parser.ast.Variable;
+
+/*
+ * checks that 'PersistentEnvironment.restore' brings back exactly the state saved by 'snapshot', also after
+ * the environment has been changed in between; run after compiling the main sources with
+ *   javac -cp . -d . test/progetto/environments/PersistentEnvironmentTest.java
+ *   java progetto.environments.PersistentEnvironmentTest
+ * the exit status is 1 if a check fails
+ */
+public class PersistentEnvironmentTest {
+
+	private static final int VARS = 2000; // enough ids to fill more than two levels of the trie
+
+	private static final Variable[] vars = new Variable[VARS];
+
+	static {
+		for (var id = 0; id < VARS; id++)
+			vars[id] = new Variable("x" + id, id);
+	}
+
+	private static void check(boolean condition, String msg) {
+		if (!condition)
+			throw new AssertionError(msg);
+	}
+
+	// the info of 'var' in 'env', null if undeclared
+	private static Integer lookup(Environment<Integer> env, Variable var) {
+		try {
+			return env.lookup(var);
+		} catch (EnvironmentException e) {
+			return null;
+		}
+	}
+
+	// checks that the scope chain of 'env' associates the same infos as 'model', whose innermost scope is last
+	private static void checkState(Environment<Integer> env, List<Map<Integer, Integer>> model, String msg) {
+		for (var id = 0; id < VARS; id++) {
+			Integer expected = null;
+			for (var scope : model)
+				if (scope.containsKey(id))
+					expected = scope.get(id);
+			check(Objects.equals(lookup(env, vars[id]), expected), msg + ": wrong info for " + vars[id].getName());
+		}
+	}
+
+	// as 'checkState', and also checks each enclosing scope by exiting the scopes one at a time
+	private static void checkScopes(PersistentEnvironment<Integer> env, List<Map<Integer, Integer>> model,
+			String msg) {
+		final var saved = env.snapshot();
+		for (var depth = model.size(); depth > 0; depth--) {
+			checkState(env, model.subList(0, depth), msg + ", depth " + depth);
+			if (depth > 1)
+				env.exitScope();
+		}
+		env.restore(saved);
+	}
+
+	private static List<Map<Integer, Integer>> copy(List<Map<Integer, Integer>> model) {
+		final var result = new ArrayList<Map<Integer, Integer>>();
+		for (var scope : model)
+			result.add(new HashMap<>(scope));
+		return result;
+	}
+
+	// a simple case: the changes in a nested scope are undone by restore
+	private static void testNestedScope() {
+		final var env = new PersistentEnvironment<Integer>();
+		env.dec(vars[0], 1);
+		final var outer = env.snapshot();
+		env.enterScope();
+		env.dec(vars[1], 2);
+		env.update(vars[0], 3);
+		final var inner = env.snapshot();
+		env.restore(outer);
+		check(env.lookup(vars[0]) == 1, "update not undone");
+		check(lookup(env, vars[1]) == null, "declaration not undone");
+		env.dec(vars[1], 4); // in the outer scope, does not change 'inner'
+		env.restore(inner);
+		check(env.lookup(vars[0]) == 3 && env.lookup(vars[1]) == 2, "inner state changed");
+		env.exitScope(); // to the enclosing scope of 'inner', where x0 has been updated and x1 is not declared
+		check(env.lookup(vars[0]) == 3 && lookup(env, vars[1]) == null, "wrong enclosing scope");
+	}
+
+	// random operations, with random snapshots restored later, compared with a model made of hash maps
+	private static void testRandom(long seed) {
+		final var random = new Random(seed);
+		final var env = new PersistentEnvironment<Integer>();
+		var model = new ArrayList<Map<Integer, Integer>>(List.of(new HashMap<>()));
+		final var snapshots = new ArrayList<PersistentEnvironment.Snapshot<Integer>>();
+		final var models = new ArrayList<List<Map<Integer, Integer>>>();
+		for (var step = 0; step < 5000; step++) {
+			final var id = random.nextInt(VARS);
+			final var op = random.nextInt(100);
+			if (op < 50) {
+				if (!model.get(model.size() - 1).containsKey(id)) {
+					env.dec(vars[id], step);
+					model.get(model.size() - 1).put(id, step);
+				}
+			} else if (op < 75) {
+				for (var i = model.size() - 1; i >= 0; i--)
+					if (model.get(i).containsKey(id)) {
+						env.update(vars[id], step);
+						model.get(i).put(id, step);
+						break;
+					}
+			} else if (op < 84) {
+				env.enterScope();
+				model.add(new HashMap<>());
+			} else if (op < 93) {
+				if (model.size() > 1) {
+					env.exitScope();
+					model.remove(model.size() - 1);
+				}
+			} else if (op < 97) {
+				snapshots.add(env.snapshot());
+				models.add(copy(model));
+			} else if (!snapshots.isEmpty()) {
+				final var i = random.nextInt(snapshots.size());
+				env.restore(snapshots.get(i));
+				model = new ArrayList<>(copy(models.get(i)));
+			}
+		}
+		checkScopes(env, model, "final state, seed " + seed);
+		for (var i = 0; i < snapshots.size(); i++) {
+			env.restore(snapshots.get(i));
+			checkState(env, models.get(i), "snapshot " + i + ", seed " + seed);
+		}
+	}
+
+	public static void main(String[] args) {
+		try {
+			testNestedScope();
+			for (var seed = 0; seed < 5; seed++)
+				testRandom(seed);
+			System.out.println("PersistentEnvironmentTest: all checks passed");
+		} catch (AssertionError e) {
+			System.err.println("PersistentEnvironmentTest: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
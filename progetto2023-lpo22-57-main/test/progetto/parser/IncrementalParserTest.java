@@ -0,0 +1,191 @@
+package progetto.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+/*
+ * checks that 'IncrementalParser.edit' returns the same program, or throws the same syntax error, as a parser
+ * built from scratch on the edited source, and that 'text()' and 'tokens()' are those of the edited source;
+ * the edits are random, many of them break the syntax or contain lexical errors and are undone later, and many
+ * are placed at the boundaries of the chunks and of the lexing windows of 'TokenRope'; run after compiling the
+ * main sources with
+ *   javac -cp . -d . test/progetto/parser/IncrementalParserTest.java
+ *   java progetto.parser.IncrementalParserTest
+ * the exit status is 1 if a check fails
+ */
+public class IncrementalParserTest {
+
+	private static final String LONG_NAME = "x".repeat(TokenRope.WINDOW + 10); // longer than a window
+
+	private static final String[] STMTS = { "var x = 1", "print x", "x = x + [1;3]", "print fst (1, 2) == snd (3, 4)",
+			"var y = !true && false", "print -x * 2147483647", "foreach i in [0;4] { print i; var z = i * 2 }",
+			"if (x == 1) { print 1; print 2 } else { print 3 }", "var " + LONG_NAME + " = 0012" };
+
+	private static final String[] SEPARATORS = { ";", "; ", ";\n", ";\r\n", ";\r", " ;\t// comment\n",
+			";// " + "c".repeat(TokenRope.WINDOW) + "\n" };
+
+	// pieces inserted by the edits, most of them break the syntax, some are lexical errors
+	private static final String[] PIECES = { "", " ", "\n", "\r\n", "\r", ";", "{", "}", "(", ")", "[", "]", "print",
+			"var", "if", "else", "foreach", "in", "x", "iffy", "1", "+", "==", "=", "&&", "&", "/", "//", "$",
+			"99999999999", "\uD83D\uDE00", "if\uD801\uDC00", "// comment ; { }\n", "print x;", "; print 3",
+			"if (y) { var q = 2; print q };" };
+
+	private static void check(boolean condition, String msg) {
+		if (!condition)
+			throw new AssertionError(msg);
+	}
+
+	// a valid sequence of 'count' statements, with blocks nested up to 'depth' levels
+	private static void stmts(Random random, int count, int depth, StringBuilder source) {
+		for (var i = 0; i < count; i++) {
+			if (i > 0)
+				source.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+			if (depth > 0 && random.nextInt(8) == 0) {
+				source.append("if (x) {\n");
+				stmts(random, 1 + random.nextInt(count / 4 + 2), depth - 1, source);
+				source.append("\n} else { print 0 }");
+			} else
+				source.append(STMTS[random.nextInt(STMTS.length)]);
+		}
+	}
+
+	private static String program(Random random, int count) {
+		final var source = new StringBuilder();
+		stmts(random, count, 4, source);
+		return source.toString();
+	}
+
+	/*
+	 * the program parsed from scratch, or the error; out of range NUM literals are reported with a
+	 * NumberFormatException by both parsers
+	 */
+	private static String parse(String source) {
+		try (var parser = new MyLangParser(new MyLangTokenizer(new BufferedReader(new StringReader(source))))) {
+			return parser.parseProg().toString();
+		} catch (ParserException | NumberFormatException e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage();
+		} catch (IOException e) { // not thrown when closing a 'StringReader'
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// the program returned by 'parser' after the edit, or the error
+	private static String edit(IncrementalParser parser, int offset, int removed, String inserted) {
+		try {
+			return parser.edit(offset, removed, inserted).toString();
+		} catch (ParserException | NumberFormatException e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+	}
+
+	private static String tokens(TokenBuffer buffer) {
+		final var result = new StringBuilder();
+		for (var i = 0; i < buffer.size(); i++)
+			result.append(buffer.type(i)).append(' ').append(buffer.offset(i)).append(' ').append(buffer.line(i))
+					.append(' ').append(buffer.lexeme(i)).append('\n');
+		return result.append(buffer.hasError()).toString();
+	}
+
+	/*
+	 * an offset close to the boundary of a chunk or of a window, or a random one; the chunks are split again
+	 * by the edits, so the token positions which are multiples of 'CHUNK_SIZE' are boundaries only initially
+	 */
+	private static int offset(Random random, String source) {
+		final var length = source.length();
+		switch (random.nextInt(3)) {
+		case 0: {
+			final var buffer = TokenBuffer.lex(new MyLangScanner(CharBuffer.wrap(source)));
+			final var chunks = buffer.size() / TokenRope.CHUNK_SIZE;
+			if (chunks > 0) {
+				final var index = (1 + random.nextInt(chunks)) * TokenRope.CHUNK_SIZE + random.nextInt(5) - 2;
+				return buffer.offset(Math.min(index, buffer.size() - 1));
+			}
+			break;
+		}
+		case 1:
+			if (length >= TokenRope.WINDOW)
+				return random.nextInt(length / TokenRope.WINDOW) * TokenRope.WINDOW + random.nextInt(5);
+			break;
+		}
+		return random.nextInt(length + 1);
+	}
+
+	/*
+	 * lexemes whose recognition depends on the one or two characters following them, moved across the end
+	 * of the first window, both when the source is lexed from scratch and when it is inserted by an edit
+	 */
+	private static void testWindowBoundaries() {
+		final String[] pieces = { "x == 1", "x && y", "x & y", "1 // c", "if\uD801\uDC00", "iffy", "99999999999",
+				"2147483647" };
+		for (var piece : pieces)
+			for (var shift = 0; shift < 2 * piece.length() + 4; shift++) {
+				final var source = "print" + " ".repeat(TokenRope.WINDOW - 5 - shift) + piece + "; print 0";
+				final var expected = parse(source);
+				final var tokens = tokens(TokenBuffer.lex(new MyLangScanner(CharBuffer.wrap(source))));
+				final var msg = "'" + piece + "' at " + (TokenRope.WINDOW - shift);
+				final var lexed = new IncrementalParser(source);
+				check(edit(lexed, 0, 0, "").equals(expected), msg + ": wrong program or error");
+				check(tokens(lexed.tokens()).equals(tokens), msg + ": wrong tokens");
+				final var edited = new IncrementalParser("print 0");
+				check(edit(edited, 0, 7, source).equals(expected), msg + ": wrong program or error after an edit");
+				check(tokens(edited.tokens()).equals(tokens), msg + ": wrong tokens after an edit");
+			}
+	}
+
+	// random edits of a random program, each edit which breaks it is undone with probability 1/2
+	private static void testRandom(long seed, int count, int edits) {
+		final var random = new Random(seed);
+		var source = program(random, count);
+		final var parser = new IncrementalParser(source);
+		String result;
+		try {
+			result = parser.parseProg().toString();
+		} catch (ParserException | NumberFormatException e) {
+			result = e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+		check(result.equals(parse(source)), "initial parse, seed " + seed);
+		for (var step = 0; step < edits; step++) {
+			final var before = result;
+			final var offset = offset(random, source);
+			final var removed = random.nextInt(10) == 0 ? random.nextInt(source.length() - offset + 1)
+					: random.nextInt(Math.min(8, source.length() - offset) + 1);
+			final var inserted = switch (random.nextInt(8)) {
+			case 0 -> program(random, 1 + random.nextInt(count / 2 + 1)); // may span several windows
+			case 1 -> source.substring(offset, offset + removed); // the same text, the tokens do not change
+			default -> PIECES[random.nextInt(PIECES.length)];
+			};
+			final var edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+			result = parse(edited);
+			final var msg = "seed " + seed + ", step " + step + ", edit at " + offset;
+			check(edit(parser, offset, removed, inserted).equals(result), msg + ": wrong program or error");
+			check(parser.text().equals(edited), msg + ": wrong text");
+			if (!result.equals(before) && random.nextBoolean()) { // undone
+				result = before;
+				check(edit(parser, offset, inserted.length(), source.substring(offset, offset + removed))
+						.equals(result), msg + ": wrong program or error after the undo");
+				check(parser.text().equals(source), msg + ": wrong text after the undo");
+			} else
+				source = edited;
+		}
+		check(tokens(parser.tokens()).equals(tokens(TokenBuffer.lex(new MyLangScanner(CharBuffer.wrap(source))))),
+				"wrong tokens, seed " + seed);
+	}
+
+	public static void main(String[] args) {
+		try {
+			testWindowBoundaries();
+			for (var seed = 0; seed < 20; seed++)
+				testRandom(seed, 1 + seed % 10, 300); // small programs, a single chunk and window
+			for (var seed = 20; seed < 25; seed++)
+				testRandom(seed, 300, 200); // several chunks and windows
+			System.out.println("IncrementalParserTest: all checks passed");
+		} catch (AssertionError e) {
+			System.err.println("IncrementalParserTest: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}